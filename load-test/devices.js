@@ -0,0 +1,64 @@
+// Mixed read/write load against a running Device Manager.
+//
+//   k6 run load-test/devices.js
+//   k6 run -e BASE_URL=http://host:8080/device-manager/api/v1 -e VUS=10000 load-test/devices.js
+//
+// Run it once with VIRTUAL_THREADS_ENABLED=true and once with false on the application to compare.
+import http from 'k6/http';
+import { check } from 'k6';
+import { Counter } from 'k6/metrics';
+
+const BASE_URL = __ENV.BASE_URL || 'http://localhost:8080/device-manager/api/v1';
+const VUS = parseInt(__ENV.VUS || '10000');
+const SEED_DEVICES = 1000;
+const REQUEST = { headers: { 'Content-Type': 'application/device-request-v1+json' } };
+// An overloaded database must surface as 503 with Retry-After, never as 500
+const serverErrors = new Counter('server_errors');
+
+export const options = {
+    scenarios: {
+        devices: {
+            executor: 'ramping-vus',
+            stages: [
+                { duration: '1m', target: VUS },
+                { duration: '3m', target: VUS },
+                { duration: '30s', target: 0 },
+            ],
+        },
+    },
+    thresholds: {
+        http_req_failed: ['rate<0.01'],
+        http_req_duration: ['p(95)<250', 'p(99)<1000'],
+        server_errors: ['count==0'],
+    },
+};
+
+function track(response) {
+    if (response.status === 500) {
+        serverErrors.add(1);
+    }
+    return response;
+}
+
+function device(i) {
+    return JSON.stringify({ name: `Device ${i}`, brand: `Brand ${i % 50}`, state: 'available' });
+}
+
+export function setup() {
+    const devices = Array.from({ length: SEED_DEVICES }, (_, i) => JSON.parse(device(i)));
+    const response = http.post(`${BASE_URL}/devices:batch`, JSON.stringify(devices), REQUEST);
+    check(response, { 'seeded': r => r.status === 201 });
+    return { ids: response.json('ids') };
+}
+
+export default function (data) {
+    const roll = Math.random();
+    if (roll < 0.8) {
+        const id = data.ids[Math.floor(Math.random() * data.ids.length)];
+        check(track(http.get(`${BASE_URL}/devices/${id}`)), { 'get 200': r => r.status === 200 });
+    } else if (roll < 0.9) {
+        check(track(http.get(`${BASE_URL}/devices?brand=Brand%20${__VU % 50}&limit=20`)), { 'find 200': r => r.status === 200 });
+    } else {
+        check(track(http.post(`${BASE_URL}/devices`, device(__ITER), REQUEST)), { 'create 201': r => r.status === 201 });
+    }
+}
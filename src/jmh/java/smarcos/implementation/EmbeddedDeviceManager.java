@@ -0,0 +1,61 @@
+package smarcos.implementation;
+
+import com.model.device.DeviceCreationRequest;
+import com.model.device.DeviceState;
+import io.zonky.test.db.postgres.embedded.EmbeddedPostgres;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import smarcos.implementation.services.DeviceService;
+
+import java.io.IOException;
+import java.util.stream.IntStream;
+
+/**
+ * The application wired as in production, without the web layer, against an embedded Postgres migrated by Flyway.
+ */
+public final class EmbeddedDeviceManager implements AutoCloseable {
+    public static final int BRANDS = 50;
+    private static final int SEED_BATCH_SIZE = 10_000;
+
+    private final EmbeddedPostgres postgres;
+    private final ConfigurableApplicationContext context;
+
+    public EmbeddedDeviceManager() throws IOException {
+        postgres = EmbeddedPostgres.start();
+        context = new SpringApplicationBuilder(DeviceManagerApplication.class)
+                .web(WebApplicationType.NONE)
+                .run("--spring.datasource.url=" + postgres.getJdbcUrl("postgres", "postgres"),
+                        "--spring.datasource.username=postgres",
+                        "--spring.datasource.password=postgres",
+                        "--spring.docker.compose.enabled=false",
+                        "--device.cache.invalidation.enabled=false",
+                        "--logging.level.smarcos.implementation=WARN");
+    }
+
+    public <T> T getBean(Class<T> type) {
+        return context.getBean(type);
+    }
+
+    /**
+     * Inserts devices spread over {@link #BRANDS} brands and every state, then refreshes the planner statistics the
+     * way autovacuum would.
+     */
+    public void seed(int devices) {
+        var deviceService = getBean(DeviceService.class);
+        var states = DeviceState.values();
+        for (int from = 0; from < devices; from += SEED_BATCH_SIZE) {
+            deviceService.createDevices(IntStream.range(from, Math.min(from + SEED_BATCH_SIZE, devices))
+                    .mapToObj(i -> new DeviceCreationRequest("Device " + i, "Brand " + i % BRANDS, states[i % states.length]))
+                    .toList());
+        }
+        getBean(JdbcTemplate.class).execute("ANALYZE devices");
+    }
+
+    @Override
+    public void close() throws IOException {
+        context.close();
+        postgres.close();
+    }
+}
@@ -0,0 +1,25 @@
+package smarcos.implementation.components;
+
+import com.model.device.DeviceState;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class StringToDeviceStateConverterBenchmark {
+
+    @Param({"available", "IN-USE", "Inactive"})
+    private String source;
+
+    private final StringToDeviceStateConverter converter = new StringToDeviceStateConverter();
+
+    @Benchmark
+    public DeviceState convert() {
+        return converter.convert(source);
+    }
+}
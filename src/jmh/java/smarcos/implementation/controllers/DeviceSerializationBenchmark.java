@@ -0,0 +1,84 @@
+package smarcos.implementation.controllers;
+
+import com.model.device.DeviceResponse;
+import com.model.device.DeviceState;
+import com.model.device.DevicesResponse;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.data.domain.ScrollPosition;
+import org.springframework.data.domain.Window;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+import org.springframework.mock.http.MockHttpOutputMessage;
+import smarcos.implementation.entities.Device;
+import smarcos.implementation.mapper.DeviceMapper;
+import smarcos.implementation.repository.DeviceView;
+
+import java.io.IOException;
+import java.time.OffsetDateTime;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+/**
+ * Writes devices the way Spring MVC does for the versioned media types, through the Jackson message converter
+ * configured with the same defaults as the application's ObjectMapper.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DeviceSerializationBenchmark {
+    private static final MediaType DEVICE_RESPONSE = MediaType.parseMediaType("application/device-response-v1+json");
+    private static final MediaType DEVICES_RESPONSE = MediaType.parseMediaType("application/devices-response-v1+json");
+
+    private final MappingJackson2HttpMessageConverter converter =
+            new MappingJackson2HttpMessageConverter(Jackson2ObjectMapperBuilder.json().build());
+    private final DeviceResponse deviceResponse = DeviceMapper.toDeviceResponse(device(0));
+
+    @State(Scope.Benchmark)
+    public static class Page {
+        @Param({"1", "100", "1000"})
+        private int pageSize;
+
+        private DevicesResponse devicesResponse;
+
+        @Setup
+        public void setUp() {
+            var devices = IntStream.range(0, pageSize)
+                    .mapToObj(DeviceSerializationBenchmark::device)
+                    .map(device -> new DeviceView(device.getId(), device.getName(), device.getBrand(), device.getState(),
+                            device.getCreationTime(), device.getLastModified(), device.getVersion()))
+                    .toList();
+            devicesResponse = DeviceMapper.toDevicesResponse(Window.from(devices, ScrollPosition::offset));
+        }
+    }
+
+    @Benchmark
+    public byte[] writeDeviceResponse() throws IOException {
+        var message = new MockHttpOutputMessage();
+        converter.write(deviceResponse, DEVICE_RESPONSE, message);
+        return message.getBodyAsBytes();
+    }
+
+    @Benchmark
+    public byte[] writeDevicesResponse(Page page) throws IOException {
+        var message = new MockHttpOutputMessage();
+        converter.write(page.devicesResponse, DEVICES_RESPONSE, message);
+        return message.getBodyAsBytes();
+    }
+
+    private static Device device(int i) {
+        var device = new Device();
+        device.setId(UUID.randomUUID());
+        device.setName("Device " + i);
+        device.setBrand("Brand " + i % 50);
+        device.setState(DeviceState.values()[i % DeviceState.values().length]);
+        device.setCreationTime(OffsetDateTime.now());
+        device.setLastModified(device.getCreationTime());
+        device.setVersion(0L);
+        return device;
+    }
+}
@@ -0,0 +1,53 @@
+package smarcos.implementation.exceptions;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throws and catches a not-found error below a given number of frames, as a request that ends in a 404 does below
+ * Tomcat, the Spring proxies and the service. A plain runtime exception captures the whole stack, the client error
+ * does not.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DeviceExceptionBenchmark {
+    private static final String DEVICE_NOT_FOUND_WITH_ID = "Device not found with ID: ";
+
+    @Param({"20", "150"})
+    private int depth;
+
+    private final UUID id = UUID.randomUUID();
+
+    @Benchmark
+    public String stackTrace() {
+        try {
+            return throwAt(depth, true);
+        } catch (RuntimeException e) {
+            return e.getMessage();
+        }
+    }
+
+    @Benchmark
+    public String stackless() {
+        try {
+            return throwAt(depth, false);
+        } catch (RuntimeException e) {
+            return e.getMessage();
+        }
+    }
+
+    private String throwAt(int frames, boolean stackTrace) {
+        if (frames > 0) {
+            return throwAt(frames - 1, stackTrace);
+        }
+        throw stackTrace
+                ? new RuntimeException(DEVICE_NOT_FOUND_WITH_ID + id)
+                : new DeviceNotFoundException(DEVICE_NOT_FOUND_WITH_ID + id);
+    }
+}
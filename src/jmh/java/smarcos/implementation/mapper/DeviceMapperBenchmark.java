@@ -0,0 +1,70 @@
+package smarcos.implementation.mapper;
+
+import com.model.device.DeviceResponse;
+import com.model.device.DeviceState;
+import com.model.device.DevicesResponse;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.data.domain.ScrollPosition;
+import org.springframework.data.domain.Window;
+import smarcos.implementation.entities.Device;
+import smarcos.implementation.repository.DeviceView;
+
+import java.time.OffsetDateTime;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DeviceMapperBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class Page {
+        @Param({"1", "100", "1000"})
+        private int pageSize;
+
+        private Window<DeviceView> devices;
+
+        @Setup
+        public void setUp() {
+            var list = IntStream.range(0, pageSize).mapToObj(DeviceMapperBenchmark::view).toList();
+            devices = Window.from(list, i -> DeviceCursor.positionOf(list.get(i)), true);
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class Single {
+        private final Device device = device(0);
+    }
+
+    @Benchmark
+    public DeviceResponse toDeviceResponse(Single single) {
+        return DeviceMapper.toDeviceResponse(single.device);
+    }
+
+    @Benchmark
+    public DevicesResponse toDevicesResponse(Page page) {
+        return DeviceMapper.toDevicesResponse(page.devices);
+    }
+
+    private static Device device(int i) {
+        var device = new Device();
+        device.setId(UUID.randomUUID());
+        device.setName("Device " + i);
+        device.setBrand("Brand " + i % 50);
+        device.setState(DeviceState.values()[i % DeviceState.values().length]);
+        device.setCreationTime(OffsetDateTime.now());
+        device.setLastModified(device.getCreationTime());
+        device.setVersion(0L);
+        return device;
+    }
+
+    private static DeviceView view(int i) {
+        var device = device(i);
+        return new DeviceView(device.getId(), device.getName(), device.getBrand(), device.getState(), device.getCreationTime(),
+                device.getLastModified(), device.getVersion());
+    }
+}
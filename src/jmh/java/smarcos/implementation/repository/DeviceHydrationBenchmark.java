@@ -0,0 +1,62 @@
+package smarcos.implementation.repository;
+
+import org.openjdk.jmh.annotations.*;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import smarcos.implementation.EmbeddedDeviceManager;
+import smarcos.implementation.entities.Device;
+import smarcos.implementation.mapper.DeviceCursor;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Loads the same page as managed entities and as {@link DeviceView} projections in a read-only transaction, through the
+ * same specification query as DeviceService. Run with {@code -prof gc} to compare allocations and GC time.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 10)
+@Measurement(iterations = 5, time = 10)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class DeviceHydrationBenchmark {
+    private static final int DEVICES = 100_000;
+    private static final Sort PAGE_ORDER = Sort.by(DeviceCursor.CREATION_TIME, DeviceCursor.ID);
+
+    @Param({"1000", "100000"})
+    private int limit;
+
+    private EmbeddedDeviceManager deviceManager;
+    private DeviceRepository deviceRepository;
+    private TransactionTemplate readOnlyTransaction;
+
+    @Setup
+    public void setUp() throws IOException {
+        deviceManager = new EmbeddedDeviceManager();
+        deviceManager.seed(DEVICES);
+        deviceRepository = deviceManager.getBean(DeviceRepository.class);
+        readOnlyTransaction = new TransactionTemplate(deviceManager.getBean(PlatformTransactionManager.class));
+        readOnlyTransaction.setReadOnly(true);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        deviceManager.close();
+    }
+
+    @Benchmark
+    public List<Device> entities() {
+        return readOnlyTransaction.execute(status -> deviceRepository.findBy(Specification.allOf(),
+                query -> query.as(Device.class).sortBy(PAGE_ORDER).limit(limit).all()));
+    }
+
+    @Benchmark
+    public List<DeviceView> projections() {
+        return readOnlyTransaction.execute(status -> deviceRepository.findBy(Specification.allOf(),
+                query -> query.as(DeviceView.class).sortBy(PAGE_ORDER).limit(limit).all()));
+    }
+}
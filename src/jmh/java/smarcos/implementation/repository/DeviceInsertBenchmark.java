@@ -0,0 +1,70 @@
+package smarcos.implementation.repository;
+
+import org.openjdk.jmh.annotations.*;
+import org.springframework.jdbc.core.JdbcTemplate;
+import smarcos.implementation.EmbeddedDeviceManager;
+import smarcos.implementation.entities.UuidV7Generator;
+
+import java.io.IOException;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Inserts batches of devices keyed by random (version 4) and by time-ordered (version 7) UUIDs into a table that keeps
+ * growing over the run, so the cost of scattered primary key inserts shows once the index outgrows the buffer cache.
+ * The rows go straight through JDBC to leave out everything but the id. The index size is printed at the end of each
+ * trial, per row as the trials insert different numbers of rows; the random ids leave it larger because of the page
+ * splits.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 10)
+@Measurement(iterations = 5, time = 10)
+@Fork(1)
+public class DeviceInsertBenchmark {
+    private static final int BATCH_SIZE = 500;
+    private static final String INSERT = """
+            INSERT INTO devices (id, name, brand, state, creation_time, last_modified, version)
+            VALUES (?, ?, ?, 'AVAILABLE', ?, ?, 0)""";
+
+    @Param({"v4", "v7"})
+    private String version;
+
+    private EmbeddedDeviceManager deviceManager;
+    private JdbcTemplate jdbcTemplate;
+    private Supplier<UUID> ids;
+
+    @Setup
+    public void setUp() throws IOException {
+        deviceManager = new EmbeddedDeviceManager();
+        jdbcTemplate = deviceManager.getBean(JdbcTemplate.class);
+        ids = "v7".equals(version) ? UuidV7Generator::next : UUID::randomUUID;
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        // Each trial inserts as many rows as it manages, so the size is compared per row
+        var rows = jdbcTemplate.queryForObject("SELECT count(*) FROM devices", Long.class);
+        var indexSize = jdbcTemplate.queryForObject("SELECT pg_relation_size('devices_pkey')", Long.class);
+        System.out.printf("%n%s: %d rows, primary key index %d bytes, %.1f bytes per row%n", version, rows, indexSize,
+                (double) indexSize / rows);
+        deviceManager.close();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public int[] insertBatch() {
+        var now = Timestamp.from(Instant.now());
+        var rows = new ArrayList<Object[]>(BATCH_SIZE);
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            rows.add(new Object[]{ids.get(), "Device " + i, "Brand " + i % EmbeddedDeviceManager.BRANDS, now, now});
+        }
+        return jdbcTemplate.batchUpdate(INSERT, rows);
+    }
+}
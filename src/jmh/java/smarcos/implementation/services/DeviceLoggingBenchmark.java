@@ -0,0 +1,98 @@
+package smarcos.implementation.services;
+
+import ch.qos.logback.classic.AsyncAppender;
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.classic.encoder.PatternLayoutEncoder;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.Appender;
+import ch.qos.logback.core.FileAppender;
+import com.model.device.DeviceState;
+import org.openjdk.jmh.annotations.*;
+import smarcos.implementation.entities.Device;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.OffsetDateTime;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Logs a device write the way the service used to, the whole entity at INFO, and the way it does now, the id at DEBUG
+ * with INFO enabled, through a file appender that is either written synchronously by the calling threads or behind the
+ * non-blocking async appender of logback-spring.xml.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(4)
+@Fork(1)
+public class DeviceLoggingBenchmark {
+    private static final String PATTERN = "%d{yyyy-MM-dd'T'HH:mm:ss.SSSXXX} %5p --- [%t] %-40.40logger{39} : %m%n";
+
+    @Param({"sync", "async"})
+    private String appender;
+
+    private LoggerContext loggerContext;
+    private Logger logger;
+    private Device device;
+    private Path logFile;
+
+    @Setup
+    public void setUp() throws IOException {
+        logFile = Files.createTempFile("device-logging", ".log");
+        loggerContext = new LoggerContext();
+        var encoder = new PatternLayoutEncoder();
+        encoder.setContext(loggerContext);
+        encoder.setPattern(PATTERN);
+        encoder.start();
+        var fileAppender = new FileAppender<ILoggingEvent>();
+        fileAppender.setContext(loggerContext);
+        fileAppender.setFile(logFile.toString());
+        fileAppender.setEncoder(encoder);
+        fileAppender.start();
+        Appender<ILoggingEvent> rootAppender = fileAppender;
+        if ("async".equals(appender)) {
+            var asyncAppender = new AsyncAppender();
+            asyncAppender.setContext(loggerContext);
+            asyncAppender.setQueueSize(8192);
+            asyncAppender.setNeverBlock(true);
+            asyncAppender.addAppender(fileAppender);
+            asyncAppender.start();
+            rootAppender = asyncAppender;
+        }
+        logger = loggerContext.getLogger(DeviceService.class);
+        logger.setLevel(Level.INFO);
+        logger.setAdditive(false);
+        logger.addAppender(rootAppender);
+
+        device = new Device();
+        device.setId(UUID.randomUUID());
+        device.setName("Device 42");
+        device.setBrand("Brand 7");
+        device.setState(DeviceState.AVAILABLE);
+        device.setCreationTime(OffsetDateTime.now());
+        device.setLastModified(device.getCreationTime());
+        device.setVersion(3L);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        loggerContext.stop();
+        Files.deleteIfExists(logFile);
+    }
+
+    @Benchmark
+    public void entityAtInfo() {
+        logger.info("Updated device: {}", device);
+    }
+
+    @Benchmark
+    public void idAtDebug() {
+        logger.debug("Updated device with ID: {} to version {}", device.getId(), device.getVersion());
+    }
+}
@@ -0,0 +1,72 @@
+package smarcos.implementation.services;
+
+import com.model.device.DeviceState;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.data.domain.ScrollPosition;
+import org.springframework.data.domain.Window;
+import smarcos.implementation.EmbeddedDeviceManager;
+import smarcos.implementation.repository.DeviceView;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Pages through devices with the application wired as in production against an embedded Postgres, so the numbers
+ * include the transaction, Hibernate and the keyset queries with the Flyway managed indexes.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class DeviceServiceBenchmark {
+    private static final int DEVICES = 50_000;
+    private static final String BRAND = "Brand 7";
+
+    @Param({"20", "100"})
+    private int limit;
+
+    private EmbeddedDeviceManager deviceManager;
+    private DeviceService deviceService;
+    private ScrollPosition middle;
+
+    @Setup
+    public void setUp() throws IOException {
+        deviceManager = new EmbeddedDeviceManager();
+        deviceManager.seed(DEVICES);
+        deviceService = deviceManager.getBean(DeviceService.class);
+        var firstHalf = deviceService.findDevices(null, null, null, null, ScrollPosition.keyset(), DEVICES / 2);
+        middle = firstHalf.positionAt(firstHalf.size() - 1);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        deviceManager.close();
+    }
+
+    @Benchmark
+    public Window<DeviceView> firstPage() {
+        return deviceService.findDevices(null, null, null, null, ScrollPosition.keyset(), limit);
+    }
+
+    @Benchmark
+    public Window<DeviceView> middlePage() {
+        return deviceService.findDevices(null, null, null, null, middle, limit);
+    }
+
+    @Benchmark
+    public Window<DeviceView> firstPageByBrand() {
+        return deviceService.findDevices(null, BRAND, null, null, ScrollPosition.keyset(), limit);
+    }
+
+    @Benchmark
+    public Window<DeviceView> firstPageByState() {
+        return deviceService.findDevices(DeviceState.IN_USE, null, null, null, ScrollPosition.keyset(), limit);
+    }
+
+    @Benchmark
+    public Window<DeviceView> firstPageByBrandAndState() {
+        return deviceService.findDevices(DeviceState.AVAILABLE, BRAND, null, null, ScrollPosition.keyset(), limit);
+    }
+}
@@ -0,0 +1,272 @@
+package smarcos.implementation.components;
+
+import org.postgresql.PGConnection;
+import org.postgresql.PGProperty;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import smarcos.implementation.services.DeviceService;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.List;
+import java.util.Properties;
+import java.util.UUID;
+
+/**
+ * Keeps the device cache coherent across instances. Writers publish the changed device id with Postgres NOTIFY from
+ * inside their transaction, so peers only hear about committed changes, and a dedicated LISTEN connection evicts the
+ * ids published by the other instances. Every notification, including this instance's own, also wakes up change feed
+ * readers.
+ * <p>
+ * With read replicas, the devices this instance changes are pinned to the primary in the {@link ReplicaLagGuard} once
+ * the writing transaction commits. For every batch of notifications it receives, the listener samples the primary's
+ * position and requires it for the devices named, before the local cache is updated and before change feed readers
+ * wake up.
+ * <p>
+ * A dropped connection, as after a failover or an idle timeout in between, may never report an error while waiting for
+ * notifications. After a heartbeat interval without any, the listener runs a query that must answer within the same
+ * time, and reconnects when it does not.
+ */
+@Component
+public class DeviceCacheInvalidationBus implements SmartLifecycle {
+    public static final String CHANNEL = "device_changed";
+    public static final String APPLICATION_NAME = "device-cache-invalidation";
+    private static final Logger LOGGER = LoggerFactory.getLogger(DeviceCacheInvalidationBus.class);
+    private static final String PAYLOAD_SEPARATOR = ":";
+    private static final int POLL_TIMEOUT_MILLIS = 500;
+
+    private final String nodeId = UUID.randomUUID().toString();
+    private final JdbcTemplate jdbcTemplate;
+    private final DataSourceProperties dataSourceProperties;
+    private final Cache cache;
+    private final DeviceChangeNotifier deviceChangeNotifier;
+    private final ReplicaLagGuard replicaLagGuard;
+    private final boolean enabled;
+    private final long reconnectDelayMillis;
+    private final Duration heartbeat;
+    private volatile boolean running;
+    private Thread listener;
+
+    public DeviceCacheInvalidationBus(JdbcTemplate jdbcTemplate,
+                                      DataSourceProperties dataSourceProperties,
+                                      CacheManager cacheManager,
+                                      DeviceChangeNotifier deviceChangeNotifier,
+                                      ReplicaLagGuard replicaLagGuard,
+                                      @Value("${device.cache.invalidation.enabled:true}") boolean enabled,
+                                      @Value("${device.cache.invalidation.reconnect-delay:5s}") Duration reconnectDelay,
+                                      @Value("${device.cache.invalidation.heartbeat:10s}") Duration heartbeat) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.dataSourceProperties = dataSourceProperties;
+        this.cache = cacheManager.getCache(DeviceService.DEVICES_CACHE);
+        this.deviceChangeNotifier = deviceChangeNotifier;
+        this.replicaLagGuard = replicaLagGuard;
+        this.enabled = enabled;
+        this.reconnectDelayMillis = reconnectDelay.toMillis();
+        this.heartbeat = heartbeat;
+    }
+
+    /**
+     * Announces a change of the given device to the other instances. Must be called inside the writing transaction.
+     */
+    public void publish(UUID id) {
+        notify(nodeId + PAYLOAD_SEPARATOR + id);
+        guardReplicas(List.of(id));
+    }
+
+    /**
+     * Announces newly created devices. No cache can hold them yet, so this only wakes up change feed readers. Must be
+     * called inside the writing transaction.
+     */
+    public void publishCreation(Collection<UUID> ids) {
+        notify(nodeId + PAYLOAD_SEPARATOR);
+        guardReplicas(ids);
+    }
+
+    /**
+     * Announces a change of all the given devices to the other instances with a single statement, and evicts them from
+     * this instance's cache once the writing transaction commits. Must be called inside the writing transaction.
+     */
+    public void publishAll(Collection<UUID> ids) {
+        if (ids.isEmpty()) {
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                ids.forEach(cache::evict);
+            }
+        });
+        guardReplicas(ids);
+        if (enabled) {
+            jdbcTemplate.query("SELECT pg_notify(?, ? || id::text) FROM unnest(?::uuid[]) AS id", rs -> {
+            }, CHANNEL, nodeId + PAYLOAD_SEPARATOR, ids.toArray(UUID[]::new));
+        }
+    }
+
+    @Override
+    public void start() {
+        running = true;
+        listener = Thread.ofPlatform().daemon().name("device-cache-invalidation").start(this::listen);
+        LOGGER.info("Device cache invalidation listener started for node {}", nodeId);
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+        listener.interrupt();
+        try {
+            listener.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    @Override
+    public boolean isAutoStartup() {
+        return enabled;
+    }
+
+    private void listen() {
+        while (running) {
+            try (var connection = connect()) {
+                try (var statement = connection.createStatement()) {
+                    statement.execute("LISTEN " + CHANNEL);
+                }
+                // Changes committed while this node was not listening are unknown, so start from an empty cache
+                cache.clear();
+                var pgConnection = connection.unwrap(PGConnection.class);
+                var lastHeard = System.nanoTime();
+                while (running) {
+                    var notifications = pgConnection.getNotifications(POLL_TIMEOUT_MILLIS);
+                    if (notifications.length > 0) {
+                        lastHeard = System.nanoTime();
+                    } else if (System.nanoTime() - lastHeard >= heartbeat.toNanos()) {
+                        // Fails with the socket timeout when the server is gone without a word
+                        checkAlive(connection);
+                        lastHeard = System.nanoTime();
+                    }
+                    var position = 0L;
+                    if (notifications.length > 0 && replicaLagGuard.isEnabled()) {
+                        // Notifications arrive after their commits, so the primary is already past them
+                        var sampledAt = System.nanoTime();
+                        position = primaryPosition(connection);
+                        replicaLagGuard.observePrimary(sampledAt, position);
+                    }
+                    for (var notification : notifications) {
+                        try {
+                            handle(notification.getParameter(), position);
+                        } catch (RuntimeException e) {
+                            // This thread is the only listener, so one bad notification must not end it
+                            LOGGER.warn("Device cache invalidation failed for '{}'", notification.getParameter(), e);
+                        }
+                    }
+                }
+            } catch (SQLException e) {
+                LOGGER.warn("Device cache invalidation listener disconnected: {}", e.getMessage());
+                pause();
+            }
+        }
+    }
+
+    /**
+     * Opens the listening connection. Reads time out after a heartbeat interval, so a liveness check cannot hang on a
+     * dropped connection.
+     */
+    private Connection connect() throws SQLException {
+        var properties = new Properties();
+        PGProperty.USER.set(properties, dataSourceProperties.determineUsername());
+        PGProperty.PASSWORD.set(properties, dataSourceProperties.determinePassword());
+        PGProperty.APPLICATION_NAME.set(properties, APPLICATION_NAME);
+        PGProperty.TCP_KEEP_ALIVE.set(properties, true);
+        PGProperty.SOCKET_TIMEOUT.set(properties, (int) Math.max(1, heartbeat.toSeconds()));
+        return DriverManager.getConnection(dataSourceProperties.determineUrl(), properties);
+    }
+
+    private static void checkAlive(Connection connection) throws SQLException {
+        try (var statement = connection.createStatement()) {
+            statement.execute("SELECT 1");
+        }
+    }
+
+    private void notify(String payload) {
+        if (enabled) {
+            jdbcTemplate.queryForList("SELECT pg_notify(?, ?)", CHANNEL, payload);
+        }
+    }
+
+    /**
+     * Keeps reads of the written devices off replicas that may not have replayed the writing transaction yet, once it
+     * has committed. The position is not asked for, which would cost every write a round trip.
+     */
+    private void guardReplicas(Collection<UUID> ids) {
+        if (!replicaLagGuard.isEnabled()) {
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                replicaLagGuard.pin(ids);
+            }
+        });
+    }
+
+    private static long primaryPosition(Connection connection) throws SQLException {
+        try (var statement = connection.createStatement();
+             var resultSet = statement.executeQuery(ReplicaLagGuard.PRIMARY_POSITION)) {
+            resultSet.next();
+            return resultSet.getLong(1);
+        }
+    }
+
+    /**
+     * Evicts the device named by a notification of another node. Anyone can notify the channel, so payloads that are
+     * not "node:id" or "node:" are ignored.
+     */
+    private void handle(String payload, long position) {
+        var separator = payload.indexOf(PAYLOAD_SEPARATOR);
+        if (separator < 0) {
+            LOGGER.warn("Ignored device cache invalidation without node: '{}'", payload);
+            return;
+        }
+        var id = payload.substring(separator + 1);
+        if (!id.isEmpty() && !nodeId.equals(payload.substring(0, separator))) {
+            UUID deviceId;
+            try {
+                deviceId = UUID.fromString(id);
+            } catch (IllegalArgumentException e) {
+                LOGGER.warn("Ignored device cache invalidation of invalid id: '{}'", payload);
+                return;
+            }
+            if (position > 0) {
+                replicaLagGuard.require(deviceId, position);
+            }
+            cache.evict(deviceId);
+        }
+        deviceChangeNotifier.signal();
+    }
+
+    private void pause() {
+        try {
+            Thread.sleep(reconnectDelayMillis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
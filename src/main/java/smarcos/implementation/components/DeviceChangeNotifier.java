@@ -0,0 +1,63 @@
+package smarcos.implementation.components;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Wakes up change feed readers waiting for a device change. Every committed change bumps the generation, so a reader
+ * remembers the generation before it looks for changes and only waits while it has not moved. Signals come from the
+ * cache invalidation bus and are lost while it reconnects, so waits are capped at the poll interval.
+ */
+@Component
+public class DeviceChangeNotifier {
+    // Not a monitor, so waiting virtual threads do not pin their carrier
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition changed = lock.newCondition();
+    private final long pollIntervalNanos;
+    private long generation;
+
+    public DeviceChangeNotifier(@Value("${device.changes.poll-interval:1s}") Duration pollInterval) {
+        this.pollIntervalNanos = pollInterval.toNanos();
+    }
+
+    public long generation() {
+        lock.lock();
+        try {
+            return generation;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void signal() {
+        lock.lock();
+        try {
+            generation++;
+            changed.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Waits until the generation moves past the given one, the poll interval runs out or the timeout does.
+     */
+    public void await(long seenGeneration, Duration timeout) {
+        var remainingNanos = Math.min(timeout.toNanos(), pollIntervalNanos);
+        lock.lock();
+        try {
+            while (generation == seenGeneration && remainingNanos > 0) {
+                remainingNanos = changed.awaitNanos(remainingNanos);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            lock.unlock();
+        }
+    }
+}
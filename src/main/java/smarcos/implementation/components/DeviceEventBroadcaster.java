@@ -0,0 +1,274 @@
+package smarcos.implementation.components;
+
+import com.model.device.DeviceState;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.domain.Limit;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.TransactionException;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import smarcos.implementation.mapper.DeviceMapper;
+import smarcos.implementation.repository.DeviceChangeRepository;
+import smarcos.implementation.repository.DeviceChangeView;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Pushes committed device changes to server-sent event subscribers. A single pump reads the change feed once for all
+ * subscribers of this instance and offers every change to the bounded buffer of each subscriber it matches, and every
+ * subscriber has its own writer draining that buffer. A subscriber whose buffer overflows is disconnected instead of
+ * buffered without limit; it resumes where it stopped by reconnecting with the Last-Event-ID of the last event it got.
+ */
+@Component
+public class DeviceEventBroadcaster implements SmartLifecycle {
+    private static final Logger LOGGER = LoggerFactory.getLogger(DeviceEventBroadcaster.class);
+    private static final int BATCH_SIZE = 1000;
+    // The notifier caps every wait at its poll interval
+    private static final Duration IDLE_WAIT = Duration.ofMinutes(1);
+    private static final Duration ERROR_PAUSE = Duration.ofSeconds(1);
+    private static final String HEARTBEAT = "heartbeat";
+
+    private final DeviceChangeRepository deviceChangeRepository;
+    private final DeviceChangeNotifier deviceChangeNotifier;
+    private final int bufferSize;
+    private final long heartbeatMillis;
+    // Guards the subscribers and the cursor, so a new subscriber is either part of a dispatch or replays it
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Set<Subscription> subscribers = ConcurrentHashMap.newKeySet();
+    private long cursor;
+    private volatile boolean running;
+    private Thread pump;
+
+    public DeviceEventBroadcaster(DeviceChangeRepository deviceChangeRepository,
+                                  DeviceChangeNotifier deviceChangeNotifier,
+                                  @Value("${device.events.buffer-size:256}") int bufferSize,
+                                  @Value("${device.events.heartbeat:15s}") Duration heartbeat) {
+        this.deviceChangeRepository = deviceChangeRepository;
+        this.deviceChangeNotifier = deviceChangeNotifier;
+        this.bufferSize = bufferSize;
+        this.heartbeatMillis = heartbeat.toMillis();
+    }
+
+    /**
+     * Streams the changes of devices matching the optional filters to the emitter, starting after the given sequence
+     * number or, without one, with the next change. Deletions carry no device, so they only reach unfiltered streams.
+     */
+    public void subscribe(SseEmitter emitter, DeviceState state, String brand, Long lastEventId) {
+        var since = lastEventId == null ? deviceChangeRepository.findLatestSeq() : lastEventId;
+        Subscription subscription;
+        lock.lock();
+        try {
+            if (subscribers.isEmpty()) {
+                // Nobody else needs the pump's position, so it can start wherever this subscriber does
+                cursor = since;
+            }
+            subscription = new Subscription(emitter, state, brand, since, cursor, new ArrayBlockingQueue<>(bufferSize));
+            subscription.writer = Thread.ofVirtual().name("device-events-writer").unstarted(() -> write(subscription));
+            emitter.onCompletion(() -> unsubscribe(subscription));
+            emitter.onTimeout(() -> unsubscribe(subscription));
+            emitter.onError(e -> unsubscribe(subscription));
+            subscribers.add(subscription);
+        } finally {
+            lock.unlock();
+        }
+        // Only started once registered, so a writer that ends at once still removes its subscriber
+        subscription.writer.start();
+        LOGGER.info("Device event subscriber added after change {}, {} subscribers.", since, subscribers.size());
+    }
+
+    public int subscriberCount() {
+        return subscribers.size();
+    }
+
+    @Override
+    public void start() {
+        running = true;
+        pump = Thread.ofPlatform().daemon().name("device-events-pump").start(this::pump);
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+        pump.interrupt();
+        try {
+            pump.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        subscribers.forEach(this::unsubscribe);
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    private void pump() {
+        while (running) {
+            var generation = deviceChangeNotifier.generation();
+            long from;
+            lock.lock();
+            try {
+                from = cursor;
+            } finally {
+                lock.unlock();
+            }
+            if (subscribers.isEmpty()) {
+                deviceChangeNotifier.await(generation, IDLE_WAIT);
+                continue;
+            }
+            try {
+                var changes = deviceChangeRepository.findChangesAfter(from, Limit.of(BATCH_SIZE));
+                if (changes.isEmpty()) {
+                    deviceChangeNotifier.await(generation, IDLE_WAIT);
+                } else {
+                    dispatch(from, changes);
+                }
+            } catch (RuntimeException e) {
+                LOGGER.warn("Reading device changes failed: {}", e.getMessage());
+                pause();
+            }
+        }
+    }
+
+    private void dispatch(long from, List<DeviceChangeView> changes) {
+        lock.lock();
+        try {
+            if (cursor != from) {
+                // Every subscriber left while reading and a new one moved the cursor, so these may not be the next
+                return;
+            }
+            for (var subscription : subscribers) {
+                offer(subscription, changes);
+            }
+            cursor = changes.getLast().seq();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void offer(Subscription subscription, List<DeviceChangeView> changes) {
+        for (var change : changes) {
+            if (change.seq() > subscription.liveAfter && subscription.accepts(change)
+                    && !subscription.buffer.offer(change)) {
+                LOGGER.warn("Disconnecting device event subscriber that fell {} events behind.", bufferSize);
+                unsubscribe(subscription);
+                return;
+            }
+        }
+    }
+
+    private void unsubscribe(Subscription subscription) {
+        if (subscribers.remove(subscription)) {
+            subscription.writer.interrupt();
+        }
+    }
+
+    private void write(Subscription subscription) {
+        try {
+            if (!subscribers.contains(subscription)) {
+                // Dropped before its writer started, which may not have seen the interrupt
+                subscription.emitter.complete();
+                return;
+            }
+            replay(subscription);
+            while (!Thread.currentThread().isInterrupted()) {
+                var change = subscription.buffer.poll(heartbeatMillis, TimeUnit.MILLISECONDS);
+                if (change == null) {
+                    subscription.emitter.send(SseEmitter.event().comment(HEARTBEAT));
+                } else {
+                    send(subscription, change);
+                }
+            }
+            subscription.emitter.complete();
+        } catch (InterruptedException e) {
+            // Unsubscribed, either for overflowing its buffer or because the stream has ended
+            subscription.emitter.complete();
+        } catch (IOException | IllegalStateException | DataAccessException | TransactionException e) {
+            // The client went away or its backlog could not be read, the container ends the request
+            LOGGER.info("Device event subscriber dropped: {}", e.getMessage());
+        } finally {
+            unsubscribe(subscription);
+        }
+    }
+
+    /**
+     * Sends the changes committed between the subscriber's position and the pump's position when it subscribed. Later
+     * changes are already in its buffer.
+     */
+    private void replay(Subscription subscription) throws IOException {
+        var position = subscription.since;
+        while (position < subscription.liveAfter) {
+            var changes = deviceChangeRepository.findChangesAfter(position, Limit.of(BATCH_SIZE));
+            if (changes.isEmpty()) {
+                return;
+            }
+            for (var change : changes) {
+                if (change.seq() > subscription.liveAfter) {
+                    return;
+                }
+                if (subscription.accepts(change)) {
+                    send(subscription, change);
+                }
+                position = change.seq();
+            }
+        }
+    }
+
+    private static void send(Subscription subscription, DeviceChangeView change) throws IOException {
+        subscription.emitter.send(SseEmitter.event()
+                .id(Long.toString(change.seq()))
+                .name(change.type().getValue())
+                .data(DeviceMapper.toDeviceChangeResponse(change), MediaType.APPLICATION_JSON));
+    }
+
+    private void pause() {
+        try {
+            Thread.sleep(ERROR_PAUSE);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static final class Subscription {
+        private final SseEmitter emitter;
+        private final DeviceState state;
+        private final String brand;
+        private final long since;
+        private final long liveAfter;
+        private final BlockingQueue<DeviceChangeView> buffer;
+        private Thread writer;
+
+        private Subscription(SseEmitter emitter, DeviceState state, String brand, long since, long cursor,
+                             BlockingQueue<DeviceChangeView> buffer) {
+            this.emitter = emitter;
+            this.state = state;
+            this.brand = brand;
+            this.since = since;
+            this.liveAfter = Math.max(since, cursor);
+            this.buffer = buffer;
+        }
+
+        private boolean accepts(DeviceChangeView change) {
+            if (state == null && brand == null) {
+                return true;
+            }
+            var device = change.device();
+            return device != null
+                    && (state == null || state == device.state())
+                    && (brand == null || brand.equals(device.brand()));
+        }
+    }
+}
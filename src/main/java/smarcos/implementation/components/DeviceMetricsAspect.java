@@ -0,0 +1,102 @@
+package smarcos.implementation.components;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.data.domain.Window;
+import org.springframework.stereotype.Component;
+import smarcos.implementation.exceptions.DeviceInUseException;
+import smarcos.implementation.exceptions.DeviceNotFoundException;
+import smarcos.implementation.exceptions.DeviceVersionMismatchException;
+
+import java.util.Collection;
+import java.util.Optional;
+
+/**
+ * Times every device service operation by outcome and counts the rows returned by every repository method. Runs
+ * outside the caching and transactional proxies, so service timings include cache hits and the commit. Repository
+ * call timings come from Spring Data's own spring.data.repository.invocations timer.
+ */
+@Aspect
+@Component
+@Order(Ordered.LOWEST_PRECEDENCE - 2)
+public class DeviceMetricsAspect {
+    public static final String SERVICE_TIMER = "device.service";
+    public static final String REPOSITORY_ROWS = "device.repository.rows";
+
+    private final MeterRegistry meterRegistry;
+
+    public DeviceMetricsAspect(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Around("execution(public * smarcos.implementation.services.DeviceService.*(..))")
+    public Object timeServiceOperation(ProceedingJoinPoint joinPoint) throws Throwable {
+        var sample = Timer.start(meterRegistry);
+        var outcome = "ok";
+        try {
+            return joinPoint.proceed();
+        } catch (Throwable e) {
+            outcome = outcome(e);
+            throw e;
+        } finally {
+            sample.stop(Timer.builder(SERVICE_TIMER)
+                    .description("Device service operations")
+                    .tag("operation", joinPoint.getSignature().getName())
+                    .tag("outcome", outcome)
+                    .register(meterRegistry));
+        }
+    }
+
+    @Around("execution(* smarcos.implementation.repository.DeviceRepository+.*(..))")
+    public Object countDeviceRows(ProceedingJoinPoint joinPoint) throws Throwable {
+        return countRows(joinPoint, "DeviceRepository");
+    }
+
+    @Around("execution(* smarcos.implementation.repository.DeviceChangeRepository+.*(..))")
+    public Object countDeviceChangeRows(ProceedingJoinPoint joinPoint) throws Throwable {
+        return countRows(joinPoint, "DeviceChangeRepository");
+    }
+
+    private Object countRows(ProceedingJoinPoint joinPoint, String repository) throws Throwable {
+        var result = joinPoint.proceed();
+        var rows = rows(result);
+        if (rows >= 0) {
+            DistributionSummary.builder(REPOSITORY_ROWS)
+                    .description("Rows returned by device repository methods")
+                    .baseUnit("rows")
+                    .tag("repository", repository)
+                    .tag("method", joinPoint.getSignature().getName())
+                    .register(meterRegistry)
+                    .record(rows);
+        }
+        return result;
+    }
+
+    private static String outcome(Throwable e) {
+        return switch (e) {
+            case DeviceNotFoundException ignored -> "not_found";
+            case DeviceInUseException ignored -> "in_use";
+            case DeviceVersionMismatchException ignored -> "precondition_failed";
+            default -> "error";
+        };
+    }
+
+    /**
+     * Number of rows in a query result, or -1 for results that are not rows, like counts, flags and streams that
+     * have not been read yet.
+     */
+    private static long rows(Object result) {
+        return switch (result) {
+            case Collection<?> collection -> collection.size();
+            case Window<?> window -> window.size();
+            case Optional<?> optional -> optional.isPresent() ? 1 : 0;
+            case null, default -> -1;
+        };
+    }
+}
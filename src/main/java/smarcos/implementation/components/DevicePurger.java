@@ -0,0 +1,54 @@
+package smarcos.implementation.components;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.DataAccessException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionException;
+import org.springframework.transaction.support.TransactionTemplate;
+import smarcos.implementation.repository.DeviceRepository;
+
+/**
+ * Removes the rows of deleted devices in the background. Deleting a device only marks it, so the request takes a single
+ * row update; the rows are removed here one small batch per interval, which caps the rate of deletes at batch-size per
+ * interval however many devices are decommissioned at once. Every batch is its own short transaction, so row locks are
+ * held briefly and autovacuum can keep up.
+ */
+@Component
+@ConditionalOnProperty(name = "device.purge.enabled", havingValue = "true", matchIfMissing = true)
+public class DevicePurger {
+    private static final Logger LOGGER = LoggerFactory.getLogger(DevicePurger.class);
+
+    private final DeviceRepository deviceRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final int batchSize;
+
+    public DevicePurger(DeviceRepository deviceRepository, PlatformTransactionManager transactionManager,
+                        @Value("${device.purge.batch-size:500}") int batchSize) {
+        this.deviceRepository = deviceRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Removes one batch of deleted devices and returns how many were removed, 0 when the purge failed.
+     */
+    @Scheduled(fixedDelayString = "${device.purge.interval:1s}", initialDelayString = "${device.purge.interval:1s}")
+    public int purge() {
+        try {
+            int purged = transactionTemplate.execute(status -> deviceRepository.purgeDeleted(batchSize));
+            if (purged > 0) {
+                LOGGER.debug("Purged {} deleted devices.", purged);
+            }
+            return purged;
+        } catch (DataAccessException | TransactionException e) {
+            // Retried with the next batch
+            LOGGER.warn("Purging deleted devices failed: {}", e.getMessage());
+            return 0;
+        }
+    }
+}
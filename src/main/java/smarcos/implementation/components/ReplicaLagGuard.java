@@ -0,0 +1,141 @@
+package smarcos.implementation.components;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.Supplier;
+
+/**
+ * Bounds how stale the read replicas may be. Reads in general accept a replica that lags up to the max lag behind the
+ * primary. Reads that refill the device cache must not: a stale device would stay cached until its entry expires. They
+ * require the replica to have replayed the last change of the devices they read, as far as this instance knows it.
+ * <p>
+ * Positions are WAL positions of the primary in bytes. The replica data source samples the primary's position on a
+ * schedule, and the cache invalidation listener samples it whenever notifications arrive and records it for the devices
+ * they name. A device this instance wrote itself is read from the primary until its entry expires, which saves a round
+ * trip per write. Entries expire after twice the max lag, by when the lag bound already covers them.
+ * <p>
+ * The lag bound is the oldest position sampled within the max lag, which the primary had reached by then. Without such
+ * a sample, as while the primary cannot be sampled, nothing bounds the lag and reads go to the primary.
+ */
+@Component
+public class ReplicaLagGuard {
+    /**
+     * The primary's current WAL position in bytes.
+     */
+    public static final String PRIMARY_POSITION = "SELECT (pg_current_wal_lsn() - '0/0'::pg_lsn)::bigint";
+    /**
+     * The WAL position a standby has replayed up to in bytes, null on a server that is not a standby.
+     */
+    public static final String REPLAY_POSITION = "SELECT (pg_last_wal_replay_lsn() - '0/0'::pg_lsn)::bigint";
+    private static final int MAX_TRACKED_DEVICES = 100_000;
+
+    private final boolean enabled;
+    private final long maxLagNanos;
+    private final Map<UUID, Long> devicePositions;
+    // Primary positions sampled within the max lag with their System.nanoTime(), oldest first
+    private final ArrayDeque<long[]> samples = new ArrayDeque<>();
+    private final ThreadLocal<Long> readPosition = new ThreadLocal<>();
+
+    public ReplicaLagGuard(@Value("${device.datasource.replica-urls:}") List<String> replicaUrls,
+                           @Value("${device.datasource.replica-max-lag:5s}") Duration maxLag) {
+        this.enabled = !replicaUrls.isEmpty();
+        this.maxLagNanos = maxLag.toNanos();
+        this.devicePositions = Caffeine.newBuilder()
+                .expireAfterWrite(maxLag.multipliedBy(2))
+                .maximumSize(MAX_TRACKED_DEVICES)
+                .<UUID, Long>build()
+                .asMap();
+    }
+
+    /**
+     * Whether reads go to replicas at all. Without them nothing needs guarding and positions are not tracked.
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Records the primary's position, reached by the given System.nanoTime(). Take the time before asking for the
+     * position.
+     */
+    public synchronized void observePrimary(long sampledAt, long position) {
+        samples.addLast(new long[]{sampledAt, position});
+        prune(System.nanoTime() - maxLagNanos);
+    }
+
+    /**
+     * Requires replicas to have replayed up to the given primary position before they serve the given device.
+     */
+    public void require(UUID id, long position) {
+        devicePositions.merge(id, position, Math::max);
+    }
+
+    /**
+     * Reads the given devices from the primary for a while, after this instance changed them.
+     */
+    public void pin(Collection<UUID> ids) {
+        ids.forEach(id -> require(id, Long.MAX_VALUE));
+    }
+
+    public long requiredPosition(UUID id) {
+        return devicePositions.getOrDefault(id, 0L);
+    }
+
+    /**
+     * Runs the read with replicas that have replayed the last known change of every given device. The read must
+     * fetch its connection on this thread.
+     */
+    public <T> T readDevices(Collection<UUID> ids, Supplier<T> read) {
+        if (!enabled) {
+            return read.get();
+        }
+        var position = ids.stream().mapToLong(this::requiredPosition).max().orElse(0);
+        var outer = readPosition.get();
+        readPosition.set(outer == null ? position : Math.max(outer, position));
+        try {
+            return read.get();
+        } finally {
+            if (outer == null) {
+                readPosition.remove();
+            } else {
+                readPosition.set(outer);
+            }
+        }
+    }
+
+    /**
+     * The position a replica must have replayed to serve a read on this thread: a position the primary reached within
+     * the max lag, or more inside {@link #readDevices}. Long.MAX_VALUE, which no standby satisfies, when no position was
+     * sampled within the max lag.
+     */
+    public long requiredPosition() {
+        if (!enabled) {
+            return 0;
+        }
+        var position = readPosition.get();
+        return Math.max(position == null ? 0 : position, floor());
+    }
+
+    private synchronized long floor() {
+        prune(System.nanoTime() - maxLagNanos);
+        var oldest = samples.peekFirst();
+        return oldest != null ? oldest[1] : Long.MAX_VALUE;
+    }
+
+    /**
+     * Drops the samples taken before the horizon.
+     */
+    private void prune(long horizon) {
+        while (!samples.isEmpty() && horizon - samples.peekFirst()[0] > 0) {
+            samples.pollFirst();
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package smarcos.implementation.config;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import org.springframework.cache.caffeine.CaffeineCache;
+import smarcos.implementation.entities.Device;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Device cache that never goes back to an older device. Writes keep whichever device has the higher version, and a
+ * refill of a missing device is dropped when the device was evicted while it was being read, since the device read
+ * may predate the change that caused the eviction.
+ * <p>
+ * Evictions are counted per stripe of keys, so refills never wait on each other and the counters take constant
+ * memory. An eviction of another device in the same stripe only costs a refill its cache write.
+ */
+public class DeviceCache extends CaffeineCache {
+    private static final int STRIPES = 1024;
+
+    private final AtomicLongArray evictions = new AtomicLongArray(STRIPES);
+
+    public DeviceCache(String name, Cache<Object, Object> cache) {
+        super(name, cache, false);
+    }
+
+    /**
+     * Eviction count of the given device, to be taken before reading it for {@link #refill}.
+     */
+    public long generation(Object key) {
+        return evictions.get(stripe(key));
+    }
+
+    /**
+     * Caches a device read from the database, unless it was evicted since the given generation or a newer version of
+     * it is cached already.
+     */
+    public void refill(Object key, Device device, long generation) {
+        getNativeCache().asMap().compute(key,
+                (k, cached) -> generation(k) != generation ? cached : newer(cached, device));
+    }
+
+    /**
+     * Loads a missing device outside of any cache lock, so readers of other devices never wait on the query, and
+     * refills the cache with it.
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T get(Object key, Callable<T> valueLoader) {
+        var generation = generation(key);
+        var cached = get(key);
+        if (cached != null) {
+            return (T) cached.get();
+        }
+        T value;
+        try {
+            value = valueLoader.call();
+        } catch (Exception e) {
+            throw new ValueRetrievalException(key, valueLoader, e);
+        }
+        refill(key, (Device) value, generation);
+        return value;
+    }
+
+    @Override
+    public void put(Object key, Object value) {
+        getNativeCache().asMap().merge(key, value, DeviceCache::newer);
+    }
+
+    @Override
+    public void evict(Object key) {
+        // Counted first, so a refill either sees the eviction or is removed by it
+        evictions.incrementAndGet(stripe(key));
+        super.evict(key);
+    }
+
+    @Override
+    public boolean evictIfPresent(Object key) {
+        evictions.incrementAndGet(stripe(key));
+        return super.evictIfPresent(key);
+    }
+
+    @Override
+    public void clear() {
+        evictAll();
+        super.clear();
+    }
+
+    @Override
+    public boolean invalidate() {
+        evictAll();
+        return super.invalidate();
+    }
+
+    private void evictAll() {
+        for (int stripe = 0; stripe < STRIPES; stripe++) {
+            evictions.incrementAndGet(stripe);
+        }
+    }
+
+    private static int stripe(Object key) {
+        var hash = key.hashCode();
+        return (hash ^ (hash >>> 16)) & (STRIPES - 1);
+    }
+
+    private static Object newer(Object cached, Object value) {
+        return cached instanceof Device cachedDevice && value instanceof Device device
+                && cachedDevice.getVersion() != null && device.getVersion() != null
+                && cachedDevice.getVersion() >= device.getVersion() ? cached : value;
+    }
+}
@@ -0,0 +1,20 @@
+package smarcos.implementation.config;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import org.springframework.cache.caffeine.CaffeineCacheManager;
+import smarcos.implementation.services.DeviceService;
+
+/**
+ * Caffeine cache manager whose device cache is a {@link DeviceCache}.
+ */
+public class DeviceCacheManager extends CaffeineCacheManager {
+
+    public DeviceCacheManager(String... cacheNames) {
+        super(cacheNames);
+    }
+
+    @Override
+    protected org.springframework.cache.Cache adaptCaffeineCache(String name, Cache<Object, Object> cache) {
+        return DeviceService.DEVICES_CACHE.equals(name) ? new DeviceCache(name, cache) : super.adaptCaffeineCache(name, cache);
+    }
+}
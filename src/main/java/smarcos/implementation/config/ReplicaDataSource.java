@@ -0,0 +1,166 @@
+package smarcos.implementation.config;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.datasource.AbstractDataSource;
+import org.springframework.scheduling.annotation.Scheduled;
+import smarcos.implementation.components.ReplicaLagGuard;
+
+import javax.sql.DataSource;
+import java.io.Closeable;
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Hands out read-only connections from the replicas in round-robin order. A replica that cannot be reached is skipped
+ * until the retry delay has passed, and one that has not yet replayed the position required by the
+ * {@link ReplicaLagGuard} is skipped for this connection only. When no replica qualifies, the primary serves the read.
+ * <p>
+ * The replayed position of a replica is only asked for when a read requires more than it is known to have replayed,
+ * and at most once per position TTL, so a lagging replica costs no extra round trips on most reads.
+ * <p>
+ * The primary's position is sampled on a schedule for the lag bound of the {@link ReplicaLagGuard}, so the bound holds
+ * whether or not the cache invalidation listener runs.
+ */
+public class ReplicaDataSource extends AbstractDataSource implements Closeable {
+    private static final Logger LOGGER = LoggerFactory.getLogger(ReplicaDataSource.class);
+
+    private final DataSource primary;
+    private final List<Replica> replicas;
+    private final ReplicaLagGuard replicaLagGuard;
+    private final long retryDelayNanos;
+    private final long positionTtlNanos;
+    private final AtomicInteger next = new AtomicInteger();
+
+    public ReplicaDataSource(DataSource primary, List<DataSource> replicas, ReplicaLagGuard replicaLagGuard,
+                             Duration retryDelay, Duration positionTtl) {
+        this.primary = primary;
+        this.replicas = replicas.stream().map(Replica::new).toList();
+        this.replicaLagGuard = replicaLagGuard;
+        this.retryDelayNanos = retryDelay.toNanos();
+        this.positionTtlNanos = positionTtl.toNanos();
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        var required = replicaLagGuard.requiredPosition();
+        var first = Math.floorMod(next.getAndIncrement(), replicas.size());
+        for (var i = 0; i < replicas.size(); i++) {
+            var connection = replicas.get((first + i) % replicas.size()).connect(required);
+            if (connection != null) {
+                return connection;
+            }
+        }
+        return primary.getConnection();
+    }
+
+    /**
+     * Records the primary's current position in the {@link ReplicaLagGuard}. When sampling fails, the samples age out
+     * and reads fall back to the primary until it succeeds again.
+     */
+    @Scheduled(fixedDelayString = "${device.datasource.replica-position-sample-interval:1s}")
+    public void samplePrimary() {
+        var sampledAt = System.nanoTime();
+        try (var connection = primary.getConnection();
+             var statement = connection.createStatement();
+             var resultSet = statement.executeQuery(ReplicaLagGuard.PRIMARY_POSITION)) {
+            resultSet.next();
+            replicaLagGuard.observePrimary(sampledAt, resultSet.getLong(1));
+        } catch (SQLException e) {
+            LOGGER.warn("Sampling the primary's position failed: {}", e.getMessage());
+        }
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        throw new SQLFeatureNotSupportedException("Replica connections use the configured credentials");
+    }
+
+    @Override
+    public void close() throws IOException {
+        for (var replica : replicas) {
+            if (replica.dataSource instanceof Closeable closeable) {
+                closeable.close();
+            }
+        }
+    }
+
+    private final class Replica {
+        private final DataSource dataSource;
+        // Highest position this replica is known to have replayed, it only grows
+        private volatile long replayedPosition;
+        // System.nanoTime() after which the replayed position is asked for again when a read requires more
+        private volatile long probeAt;
+        // System.nanoTime() before which the replica is not tried again, only meaningful while down
+        private volatile long retryAt;
+        private volatile boolean down;
+
+        private Replica(DataSource dataSource) {
+            this.dataSource = dataSource;
+            this.probeAt = System.nanoTime();
+        }
+
+        /**
+         * Returns a connection to this replica if it is up and has replayed the required position, otherwise null.
+         */
+        private Connection connect(long required) {
+            if (down && System.nanoTime() - retryAt < 0) {
+                return null;
+            }
+            if (replayedPosition < required && System.nanoTime() - probeAt < 0) {
+                // Known to lag behind, until the position is checked again
+                return null;
+            }
+            Connection connection = null;
+            try {
+                connection = dataSource.getConnection();
+                if (down) {
+                    down = false;
+                    LOGGER.info("Read replica {} is reachable again.", dataSource);
+                }
+                if (replayedPosition < required) {
+                    replayedPosition = Math.max(replayedPosition, replayPosition(connection));
+                    probeAt = System.nanoTime() + positionTtlNanos;
+                }
+                if (replayedPosition >= required) {
+                    return connection;
+                }
+                LOGGER.debug("Read replica {} lags behind position {}.", dataSource, required);
+                close(connection);
+            } catch (SQLException e) {
+                if (!down) {
+                    LOGGER.warn("Read replica {} is unavailable, reading from the primary: {}", dataSource, e.getMessage());
+                }
+                down = true;
+                retryAt = System.nanoTime() + retryDelayNanos;
+                close(connection);
+            }
+            return null;
+        }
+
+        private static long replayPosition(Connection connection) throws SQLException {
+            try (var statement = connection.createStatement();
+                 var resultSet = statement.executeQuery(ReplicaLagGuard.REPLAY_POSITION)) {
+                resultSet.next();
+                var position = resultSet.getLong(1);
+                // Not a standby, so it is as current as the primary
+                return resultSet.wasNull() ? Long.MAX_VALUE : position;
+            }
+        }
+
+        private static void close(Connection connection) {
+            if (connection != null) {
+                try {
+                    connection.close();
+                } catch (SQLException e) {
+                    LOGGER.debug("Closing a read replica connection failed: {}", e.getMessage());
+                }
+            }
+        }
+    }
+}
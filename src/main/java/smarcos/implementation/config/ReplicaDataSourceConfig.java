@@ -0,0 +1,68 @@
+package smarcos.implementation.config;
+
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import smarcos.implementation.components.ReplicaLagGuard;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Sends read-only transactions to the read replicas and everything else to the primary. Only active when replica URLs
+ * are configured, otherwise Spring Boot's single pool stays in place.
+ * <p>
+ * The routing relies on the connection being fetched lazily: a transaction marks its connection read-only when it
+ * begins, and the proxy only picks the pool once the first statement runs. Replicas share the primary's credentials and
+ * pool settings.
+ */
+@Configuration(proxyBeanMethods = false)
+@ConditionalOnExpression("!'${device.datasource.replica-urls:}'.isBlank()")
+public class ReplicaDataSourceConfig {
+
+    @Bean
+    @ConfigurationProperties("spring.datasource.hikari")
+    public HikariDataSource primaryDataSource(DataSourceProperties dataSourceProperties) {
+        return dataSourceProperties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+    }
+
+    @Bean
+    public ReplicaDataSource replicaDataSource(HikariDataSource primaryDataSource,
+                                               ReplicaLagGuard replicaLagGuard,
+                                               @Value("${device.datasource.replica-urls}") List<String> replicaUrls,
+                                               @Value("${device.datasource.replica-connection-timeout:250ms}") Duration connectionTimeout,
+                                               @Value("${device.datasource.replica-retry-delay:10s}") Duration retryDelay,
+                                               @Value("${device.datasource.replica-position-ttl:100ms}") Duration positionTtl) {
+        var replicas = new ArrayList<DataSource>();
+        for (var url : replicaUrls) {
+            var config = new HikariConfig();
+            primaryDataSource.copyStateTo(config);
+            config.setJdbcUrl(url.strip());
+            config.setPoolName("replica-" + (replicas.size() + 1));
+            config.setReadOnly(true);
+            // Fall back to the primary quickly instead of holding the read for the whole pool timeout
+            config.setConnectionTimeout(connectionTimeout.toMillis());
+            // Start even while a replica is down, it is skipped until it can be reached
+            config.setInitializationFailTimeout(-1);
+            replicas.add(new HikariDataSource(config));
+        }
+        return new ReplicaDataSource(primaryDataSource, replicas, replicaLagGuard, retryDelay, positionTtl);
+    }
+
+    @Bean
+    @Primary
+    public DataSource dataSource(HikariDataSource primaryDataSource, ReplicaDataSource replicaDataSource) {
+        var dataSource = new LazyConnectionDataSourceProxy(primaryDataSource);
+        dataSource.setReadOnlyDataSource(replicaDataSource);
+        return dataSource;
+    }
+}
@@ -0,0 +1,12 @@
+package smarcos.implementation.config;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+/**
+ * Runs @Scheduled background jobs such as the purge of deleted devices, on virtual threads like requests.
+ */
+@Configuration
+@EnableScheduling
+public class SchedulingConfig {
+}
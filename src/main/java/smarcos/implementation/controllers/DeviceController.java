@@ -1,59 +1,173 @@
 package smarcos.implementation.controllers;
 
 import com.api.device.DeviceControllerApi;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.model.device.*;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import smarcos.implementation.components.DeviceEventBroadcaster;
+import smarcos.implementation.exceptions.TooManyExportsException;
+import smarcos.implementation.mapper.DeviceCursor;
+import smarcos.implementation.mapper.DeviceETag;
 import smarcos.implementation.mapper.DeviceMapper;
 import smarcos.implementation.services.DeviceService;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.time.OffsetDateTime;
+import java.util.List;
 import java.util.UUID;
+import java.util.concurrent.Semaphore;
 
 @RestController
 @RequestMapping("/api/v1")
 public class DeviceController implements DeviceControllerApi {
     public static final String APPLICATION_DEVICE_REQUEST_V_1_JSON= "application/device-request-v1+json";
+    public static final String APPLICATION_NDJSON = "application/x-ndjson";
+    public static final String LAST_EVENT_ID = "Last-Event-ID";
 
     private final DeviceService deviceService;
+    private final ObjectMapper objectMapper;
+    private final DeviceEventBroadcaster deviceEventBroadcaster;
+    // An export holds a pooled connection for as long as the client takes to read it, so only a few may run at once
+    private final Semaphore exportPermits;
+    private final long eventsTimeoutMillis;
 
-    public DeviceController(DeviceService deviceService) {
+    public DeviceController(DeviceService deviceService, ObjectMapper objectMapper,
+                            DeviceEventBroadcaster deviceEventBroadcaster,
+                            @Value("${device.export.max-concurrent:2}") int maxConcurrentExports,
+                            @Value("${device.events.timeout:30m}") Duration eventsTimeout) {
         this.deviceService = deviceService;
+        this.objectMapper = objectMapper;
+        this.deviceEventBroadcaster = deviceEventBroadcaster;
+        this.exportPermits = new Semaphore(maxConcurrentExports);
+        this.eventsTimeoutMillis = eventsTimeout.toMillis();
     }
 
     @Override
     public ResponseEntity<DeviceResponse> createDevice(DeviceCreationRequest deviceCreationRequest) {
         var device = deviceService.createDevice(deviceCreationRequest);
-        return ResponseEntity.status(HttpStatus.CREATED).body(DeviceMapper.toDeviceResponse(device));
+        return ResponseEntity.status(HttpStatus.CREATED).eTag(DeviceETag.toETag(device)).body(DeviceMapper.toDeviceResponse(device));
     }
 
     @Override
-    public ResponseEntity<DeviceResponse> updateDevice(UUID id, DeviceCreationRequest deviceCreationRequest) {
-        var device = deviceService.updateDevice(id, deviceCreationRequest);
-        return ResponseEntity.ok(DeviceMapper.toDeviceResponse(device));
+    public ResponseEntity<DevicesCreationResponse> createDevices(List<DeviceCreationRequest> deviceCreationRequests) {
+        var ids = deviceService.createDevices(deviceCreationRequests);
+        return ResponseEntity.status(HttpStatus.CREATED).body(new DevicesCreationResponse(ids.size(), ids));
     }
 
     @Override
-    public ResponseEntity<DeviceResponse> partiallyUpdateDevice(UUID id, DevicePartiallyUpdateRequest devicePartiallyUpdateRequest) throws Exception {
-        var device = deviceService.partiallyUpdateDevice(id, devicePartiallyUpdateRequest);
-        return ResponseEntity.ok(DeviceMapper.toDeviceResponse(device));
+    public ResponseEntity<DeviceResponse> updateDevice(UUID id, DeviceCreationRequest deviceCreationRequest, String ifMatch) {
+        var device = deviceService.updateDevice(id, deviceCreationRequest, DeviceETag.toExpectedVersion(ifMatch));
+        return ResponseEntity.ok().eTag(DeviceETag.toETag(device)).body(DeviceMapper.toDeviceResponse(device));
+    }
+
+    @Override
+    public ResponseEntity<DeviceResponse> partiallyUpdateDevice(UUID id, DevicePartiallyUpdateRequest devicePartiallyUpdateRequest, String ifMatch) throws Exception {
+        var device = deviceService.partiallyUpdateDevice(id, devicePartiallyUpdateRequest, DeviceETag.toExpectedVersion(ifMatch));
+        return ResponseEntity.ok().eTag(DeviceETag.toETag(device)).body(DeviceMapper.toDeviceResponse(device));
+    }
+
+    @Override
+    public ResponseEntity<DevicesLookupResponse> lookupDevices(List<UUID> ids) {
+        var devices = deviceService.findDevicesByIds(ids);
+        return ResponseEntity.ok(DeviceMapper.toDevicesLookupResponse(ids, devices));
+    }
+
+    @Override
+    public ResponseEntity<DeviceStatesUpdateResponse> updateDeviceStates(DeviceStatesUpdateRequest deviceStatesUpdateRequest) {
+        var transitions = deviceService.updateDeviceStates(deviceStatesUpdateRequest);
+        return ResponseEntity.ok(DeviceMapper.toDeviceStatesUpdateResponse(transitions));
     }
 
     @Override
     public ResponseEntity<DeviceResponse> getDeviceById(UUID id) {
         var device = deviceService.getDeviceById(id);
-        return ResponseEntity.ok(DeviceMapper.toDeviceResponse(device));
+        // A matching If-None-Match or If-Modified-Since turns this into a 304 before the body is written
+        return ResponseEntity.ok()
+                .eTag(DeviceETag.toETag(device))
+                .lastModified(device.getLastModified().toInstant())
+                .body(DeviceMapper.toDeviceResponse(device));
     }
 
     @Override
-    public ResponseEntity<Void> deleteDevice(UUID id) {
-        deviceService.deleteDevice(id);
+    public ResponseEntity<Void> deleteDevice(UUID id, String ifMatch) {
+        deviceService.deleteDevice(id, DeviceETag.toExpectedVersion(ifMatch));
         return ResponseEntity.noContent().build();
     }
 
     @Override
-    public ResponseEntity<DevicesResponse> findDevices(DeviceState state, String brand) {
-        return ResponseEntity.ok(DeviceMapper.toDevicesResponse(deviceService.findDevices(state, brand)));
+    public ResponseEntity<DevicesResponse> findDevices(DeviceState state, String brand, OffsetDateTime createdAfter,
+                                                       OffsetDateTime createdBefore, Integer limit, String cursor) {
+        var devices = deviceService.findDevices(state, brand, createdAfter, createdBefore, DeviceCursor.decode(cursor),
+                limit);
+        return ResponseEntity.ok().eTag(DeviceETag.toETag(devices)).body(DeviceMapper.toDevicesResponse(devices));
+    }
+
+    @Override
+    public ResponseEntity<DevicesResponse> searchDevices(String name, String brand, List<DeviceState> state,
+                                                         OffsetDateTime createdAfter, OffsetDateTime createdBefore,
+                                                         Integer limit, String cursor) {
+        var devices = deviceService.searchDevices(name, brand, state, createdAfter, createdBefore,
+                DeviceCursor.decode(cursor), limit);
+        return ResponseEntity.ok().eTag(DeviceETag.toETag(devices)).body(DeviceMapper.toDevicesResponse(devices));
+    }
+
+    @Override
+    public ResponseEntity<DeviceStatsResponse> getDeviceStats() {
+        return ResponseEntity.ok(DeviceMapper.toDeviceStatsResponse(deviceService.countDevices()));
+    }
+
+    @Override
+    public ResponseEntity<DeviceChangesResponse> getDeviceChanges(Long since, Integer limit, Integer wait) {
+        var changes = deviceService.findChanges(since, limit, Duration.ofSeconds(wait));
+        return ResponseEntity.ok(DeviceMapper.toDeviceChangesResponse(changes, since));
+    }
+
+    @GetMapping(value = "/devices/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamDeviceEvents(@RequestParam(required = false) DeviceState state,
+                                         @RequestParam(required = false) String brand,
+                                         @RequestHeader(value = LAST_EVENT_ID, required = false) Long lastEventId) {
+        var emitter = new SseEmitter(eventsTimeoutMillis);
+        deviceEventBroadcaster.subscribe(emitter, state, brand, lastEventId);
+        return emitter;
+    }
+
+    @GetMapping(value = "/devices/export", produces = APPLICATION_NDJSON)
+    public ResponseEntity<StreamingResponseBody> exportDevices() {
+        StreamingResponseBody body = outputStream -> {
+            // Taken where it is released, so an export that never starts holds no permit. Nothing has been written
+            // yet, so a busy instance still answers 503
+            if (!exportPermits.tryAcquire()) {
+                throw new TooManyExportsException("All export slots are in use.");
+            }
+            try (var generator = objectMapper.createGenerator(outputStream)) {
+                generator.setRootValueSeparator(null);
+                deviceService.exportDevices(device -> writeLine(generator, DeviceMapper.toDeviceResponse(device)));
+            } finally {
+                exportPermits.release();
+            }
+        };
+        return ResponseEntity.ok().contentType(MediaType.parseMediaType(APPLICATION_NDJSON)).body(body);
+    }
+
+    private static void writeLine(JsonGenerator generator, DeviceResponse deviceResponse) {
+        try {
+            generator.writePOJO(deviceResponse);
+            generator.writeRaw('\n');
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
     }
-}
\ No newline at end of file
+}
@@ -4,18 +4,22 @@ import com.model.device.DeviceState;
 import jakarta.persistence.*;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+import org.hibernate.annotations.SQLRestriction;
+import org.hibernate.annotations.UuidGenerator;
 
 import java.time.OffsetDateTime;
 import java.util.UUID;
 
 @Entity
 @Table(name = "devices")
+@SQLRestriction("deleted_at IS NULL")
 @Data
 @NoArgsConstructor
 public class Device {
 
     @Id
     @GeneratedValue
+    @UuidGenerator(algorithm = UuidV7Generator.class)
     @Column(nullable = false, updatable = false)
     private UUID id;
 
@@ -32,7 +36,16 @@ public class Device {
     @Column(nullable = false, updatable = false, columnDefinition = "TIMESTAMP WITH TIME ZONE")
     private OffsetDateTime creationTime;
 
-    public boolean isInUse() {
-        return DeviceState.IN_USE == state;
-    }
+    @Column(nullable = false, columnDefinition = "TIMESTAMP WITH TIME ZONE")
+    private OffsetDateTime lastModified;
+
+    /**
+     * Set when the device is deleted. Deleted devices are left out of every query and removed later by the purger.
+     */
+    @Column(columnDefinition = "TIMESTAMP WITH TIME ZONE")
+    private OffsetDateTime deletedAt;
+
+    @Version
+    @Column(nullable = false)
+    private Long version;
 }
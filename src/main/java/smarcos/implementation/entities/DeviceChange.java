@@ -0,0 +1,32 @@
+package smarcos.implementation.entities;
+
+import com.model.device.DeviceChangeType;
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.hibernate.annotations.Immutable;
+
+import java.time.OffsetDateTime;
+import java.util.UUID;
+
+@Entity
+@Table(name = "device_changes")
+@Immutable
+@Data
+@NoArgsConstructor
+public class DeviceChange {
+
+    @Id
+    @Column(nullable = false, updatable = false)
+    private Long seq;
+
+    @Column(nullable = false, updatable = false)
+    private UUID deviceId;
+
+    @Column(nullable = false, updatable = false)
+    @Enumerated(EnumType.STRING)
+    private DeviceChangeType type;
+
+    @Column(nullable = false, updatable = false, columnDefinition = "TIMESTAMP WITH TIME ZONE")
+    private OffsetDateTime changedAt;
+}
@@ -0,0 +1,16 @@
+package smarcos.implementation.exceptions;
+
+import java.io.Serial;
+
+/**
+ * Base of the exceptions that end in a client error. GlobalExceptionHandler answers them from their message alone, so
+ * they do not capture a stack trace, by far the most expensive part of throwing an exception from deep in a request.
+ */
+public abstract class ClientErrorException extends RuntimeException {
+    @Serial
+    private static final long serialVersionUID = 5108921390482213731L;
+
+    protected ClientErrorException(String message) {
+        super(message, null, false, false);
+    }
+}
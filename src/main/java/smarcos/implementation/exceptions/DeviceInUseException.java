@@ -2,7 +2,7 @@ package smarcos.implementation.exceptions;
 
 import java.io.Serial;
 
-public class DeviceInUseException extends RuntimeException {
+public class DeviceInUseException extends ClientErrorException {
     @Serial
     private static final long serialVersionUID = -4090887387119253603L;
 
@@ -2,7 +2,7 @@ package smarcos.implementation.exceptions;
 
 import java.io.Serial;
 
-public class DeviceNotFoundException extends RuntimeException {
+public class DeviceNotFoundException extends ClientErrorException {
     @Serial
     private static final long serialVersionUID = 9170757152647276639L;
 
@@ -0,0 +1,12 @@
+package smarcos.implementation.exceptions;
+
+import java.io.Serial;
+
+public class DeviceVersionMismatchException extends ClientErrorException {
+    @Serial
+    private static final long serialVersionUID = -2760128315043399621L;
+
+    public DeviceVersionMismatchException(String message) {
+        super(message);
+    }
+}
@@ -2,53 +2,103 @@ package smarcos.implementation.exceptions;
 
 import com.model.device.ApiErrorCode;
 import com.model.device.ApiErrorResponse;
+import jakarta.validation.ConstraintViolationException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.http.converter.HttpMessageNotReadableException;
+import org.springframework.jdbc.CannotGetJdbcConnectionException;
+import org.springframework.transaction.CannotCreateTransactionException;
 import org.springframework.web.HttpMediaTypeNotSupportedException;
 import org.springframework.web.HttpRequestMethodNotSupportedException;
 import org.springframework.web.bind.MethodArgumentNotValidException;
 import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.RestControllerAdvice;
+import org.springframework.web.method.annotation.MethodArgumentTypeMismatchException;
 import org.springframework.web.servlet.resource.NoResourceFoundException;
 
+/**
+ * Maps exceptions to API errors. Client errors are expected under normal operation and only logged at debug level,
+ * an exhausted connection pool is a warning and only unexpected failures are logged as errors, with their stack trace.
+ */
 @RestControllerAdvice
 public class GlobalExceptionHandler {
     private static final Logger LOGGER = LoggerFactory.getLogger(GlobalExceptionHandler.class);
+    private static final String RETRY_AFTER_SECONDS = "1";
+    private static final String EXPORT_RETRY_AFTER_SECONDS = "30";
 
     @ExceptionHandler(HttpMessageNotReadableException.class)
     public ResponseEntity<ApiErrorResponse> handleHttpMessageNotReadableException(HttpMessageNotReadableException ex) {
-        LOGGER.error("Http message not readable exception found: {}", ex.getMessage());
+        LOGGER.debug("Http message not readable exception found: {}", ex.getMessage());
         return ResponseEntity.status(HttpStatus.BAD_REQUEST)
                 .body(new ApiErrorResponse(ApiErrorCode.BAD_REQUEST, "Invalid request body format", ex.getMessage()));
     }
 
     @ExceptionHandler(MethodArgumentNotValidException.class)
     public ResponseEntity<ApiErrorResponse> handleMethodArgumentNotValidException(MethodArgumentNotValidException ex) {
-        LOGGER.error("Method argument not valid exception found: {}", ex.getMessage());
+        LOGGER.debug("Method argument not valid exception found: {}", ex.getMessage());
         return ResponseEntity.status(HttpStatus.BAD_REQUEST)
                 .body(new ApiErrorResponse(ApiErrorCode.BAD_REQUEST, "Missing required attributes. Name, brand and state are mandatory.", ex.getMessage()));
     }
 
+    @ExceptionHandler(ConstraintViolationException.class)
+    public ResponseEntity<ApiErrorResponse> handleConstraintViolationException(ConstraintViolationException ex) {
+        LOGGER.debug("Constraint violation exception found: {}", ex.getMessage());
+        return ResponseEntity.status(HttpStatus.BAD_REQUEST)
+                .body(new ApiErrorResponse(ApiErrorCode.BAD_REQUEST, "Invalid request parameters. For more details check the documentation", ex.getMessage()));
+    }
+
+    @ExceptionHandler(MethodArgumentTypeMismatchException.class)
+    public ResponseEntity<ApiErrorResponse> handleMethodArgumentTypeMismatchException(MethodArgumentTypeMismatchException ex) {
+        LOGGER.debug("Method argument type mismatch exception found: {}", ex.getMessage());
+        return ResponseEntity.status(HttpStatus.BAD_REQUEST)
+                .body(new ApiErrorResponse(ApiErrorCode.BAD_REQUEST, "Invalid value of parameter " + ex.getName(), ex.getMessage()));
+    }
+
     @ExceptionHandler(HttpMediaTypeNotSupportedException.class)
     public ResponseEntity<ApiErrorResponse> handleHttpMediaTypeNotSupportedException(HttpMediaTypeNotSupportedException exception) {
-        LOGGER.error("Http media type not supported exception:{}", exception.getMessage());
+        LOGGER.debug("Http media type not supported exception:{}", exception.getMessage());
         return ResponseEntity.status(HttpStatus.UNSUPPORTED_MEDIA_TYPE)
                 .body(new ApiErrorResponse(ApiErrorCode.MEDIA_TYPE_NOT_SUPPORTED, "Unsupported Media Type. For more details check the documentation", exception.getMessage()));
     }
 
     @ExceptionHandler(HttpRequestMethodNotSupportedException.class)
     public ResponseEntity<ApiErrorResponse> handleHttpRequestMethodNotSupportedException(HttpRequestMethodNotSupportedException exception) {
-        LOGGER.error("Http request method not supported exception:{}", exception.getMessage());
+        LOGGER.debug("Http request method not supported exception:{}", exception.getMessage());
         return ResponseEntity.status(HttpStatus.METHOD_NOT_ALLOWED)
                 .body(new ApiErrorResponse(ApiErrorCode.METHOD_NOT_ALLOWED, "Method not allowed", exception.getMessage()));
     }
 
+    /**
+     * The database could not be reached in time: no pooled connection became available, or opening or using one
+     * failed. The request is safe to retry, so the client is told to come back rather than given an internal error.
+     */
+    @ExceptionHandler({CannotCreateTransactionException.class, DataAccessResourceFailureException.class,
+            CannotGetJdbcConnectionException.class})
+    public ResponseEntity<ApiErrorResponse> handleDatabaseUnavailableException(Exception exception) {
+        LOGGER.warn("Database unavailable exception found: {}", exception.getMessage());
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, RETRY_AFTER_SECONDS)
+                .body(new ApiErrorResponse(ApiErrorCode.SERVICE_UNAVAILABLE, "Service is busy, please retry later", exception.getMessage()));
+    }
+
+    @ExceptionHandler(TooManyExportsException.class)
+    public ResponseEntity<ApiErrorResponse> handleTooManyExportsException(TooManyExportsException exception) {
+        LOGGER.warn("Too many exports exception found: {}", exception.getMessage());
+        // Raised once the export has started and its content type is already set, so it has to be replaced
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, EXPORT_RETRY_AFTER_SECONDS)
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(new ApiErrorResponse(ApiErrorCode.SERVICE_UNAVAILABLE, "Too many exports running, please retry later", exception.getMessage()));
+    }
+
     @ExceptionHandler(Exception.class)
     public ResponseEntity<ApiErrorResponse> handleGeneral(Exception exception) {
-        LOGGER.error("Exception found: {}", exception.getMessage());
+        LOGGER.error("Exception found: {}", exception.getMessage(), exception);
         return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
                 .body(new ApiErrorResponse(ApiErrorCode.INTERNAL_SERVER_ERROR,
                         "An unexpected error occurred. For more information contact the application responsible",
@@ -57,7 +107,7 @@ public class GlobalExceptionHandler {
 
     @ExceptionHandler(NoResourceFoundException.class)
     public ResponseEntity<ApiErrorResponse> handleNoResourceFoundException(NoResourceFoundException exception) {
-        LOGGER.error("No resource found exception found: {}", exception.getMessage());
+        LOGGER.debug("No resource found exception found: {}", exception.getMessage());
         return ResponseEntity.status(HttpStatus.NOT_FOUND)
                 .body(new ApiErrorResponse(ApiErrorCode.RESOURCE_NOT_FOUND,
                         "Resource not found. For more details check the documentation",
@@ -66,15 +116,36 @@ public class GlobalExceptionHandler {
 
     @ExceptionHandler(DeviceInUseException.class)
     public ResponseEntity<ApiErrorResponse> handleDeviceInUseException(DeviceInUseException exception) {
-        LOGGER.error("Device in use exception found: {}", exception.getMessage());
+        LOGGER.debug("Device in use exception found: {}", exception.getMessage());
         return ResponseEntity.status(HttpStatus.CONFLICT)
                 .body(new ApiErrorResponse(ApiErrorCode.DEVICE_IN_USE, "Device is currently in use and cannot be modified or deleted", exception.getMessage()));
     }
 
     @ExceptionHandler(DeviceNotFoundException.class)
     public ResponseEntity<ApiErrorResponse> handleDeviceNotFoundException(DeviceNotFoundException exception) {
-        LOGGER.error("Device not found exception found: {}", exception.getMessage());
+        LOGGER.debug("Device not found exception found: {}", exception.getMessage());
         return ResponseEntity.status(HttpStatus.NOT_FOUND)
                 .body(new ApiErrorResponse(ApiErrorCode.DEVICE_NOT_FOUND, "Device not found", exception.getMessage()));
     }
+
+    @ExceptionHandler(DeviceVersionMismatchException.class)
+    public ResponseEntity<ApiErrorResponse> handleDeviceVersionMismatchException(DeviceVersionMismatchException exception) {
+        LOGGER.debug("Device version mismatch exception found: {}", exception.getMessage());
+        return ResponseEntity.status(HttpStatus.PRECONDITION_FAILED)
+                .body(new ApiErrorResponse(ApiErrorCode.PRECONDITION_FAILED, "Device has changed since the requested version", exception.getMessage()));
+    }
+
+    @ExceptionHandler(InvalidCursorException.class)
+    public ResponseEntity<ApiErrorResponse> handleInvalidCursorException(InvalidCursorException exception) {
+        LOGGER.debug("Invalid cursor exception found: {}", exception.getMessage());
+        return ResponseEntity.status(HttpStatus.BAD_REQUEST)
+                .body(new ApiErrorResponse(ApiErrorCode.BAD_REQUEST, "Invalid pagination cursor", exception.getMessage()));
+    }
+
+    @ExceptionHandler(InvalidDeviceSelectionException.class)
+    public ResponseEntity<ApiErrorResponse> handleInvalidDeviceSelectionException(InvalidDeviceSelectionException exception) {
+        LOGGER.debug("Invalid device selection exception found: {}", exception.getMessage());
+        return ResponseEntity.status(HttpStatus.BAD_REQUEST)
+                .body(new ApiErrorResponse(ApiErrorCode.BAD_REQUEST, "Invalid device selection", exception.getMessage()));
+    }
 }
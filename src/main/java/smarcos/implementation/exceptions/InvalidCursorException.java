@@ -0,0 +1,12 @@
+package smarcos.implementation.exceptions;
+
+import java.io.Serial;
+
+public class InvalidCursorException extends ClientErrorException {
+    @Serial
+    private static final long serialVersionUID = 3312564897021538118L;
+
+    public InvalidCursorException(String message) {
+        super(message);
+    }
+}
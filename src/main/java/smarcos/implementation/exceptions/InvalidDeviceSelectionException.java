@@ -0,0 +1,12 @@
+package smarcos.implementation.exceptions;
+
+import java.io.Serial;
+
+public class InvalidDeviceSelectionException extends ClientErrorException {
+    @Serial
+    private static final long serialVersionUID = -6180534719278403121L;
+
+    public InvalidDeviceSelectionException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,15 @@
+package smarcos.implementation.exceptions;
+
+import java.io.Serial;
+
+/**
+ * Thrown when every export slot is taken. Answered from its message alone, so it captures no stack trace.
+ */
+public class TooManyExportsException extends RuntimeException {
+    @Serial
+    private static final long serialVersionUID = 7268945130527604391L;
+
+    public TooManyExportsException(String message) {
+        super(message, null, false, false);
+    }
+}
@@ -0,0 +1,56 @@
+package smarcos.implementation.mapper;
+
+import org.springframework.data.domain.KeysetScrollPosition;
+import org.springframework.data.domain.ScrollPosition;
+import smarcos.implementation.exceptions.InvalidCursorException;
+import smarcos.implementation.repository.DeviceView;
+
+import java.nio.charset.StandardCharsets;
+import java.time.OffsetDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.UUID;
+
+/**
+ * Converts keyset scroll positions over (creationTime, id) to and from the opaque cursor exposed by the API.
+ */
+public final class DeviceCursor {
+    public static final String CREATION_TIME = "creationTime";
+    public static final String ID = "id";
+    private static final String SEPARATOR = "|";
+
+    private DeviceCursor() {}
+
+    public static String encode(ScrollPosition position) {
+        var keys = ((KeysetScrollPosition) position).getKeys();
+        var value = keys.get(CREATION_TIME) + SEPARATOR + keys.get(ID);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * The position right after the given device.
+     */
+    public static ScrollPosition positionOf(DeviceView device) {
+        var keys = new LinkedHashMap<String, Object>();
+        keys.put(CREATION_TIME, device.creationTime());
+        keys.put(ID, device.id());
+        return ScrollPosition.forward(keys);
+    }
+
+    public static ScrollPosition decode(String cursor) {
+        if (cursor == null || cursor.isBlank()) {
+            return ScrollPosition.keyset();
+        }
+        try {
+            var value = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            var separator = value.indexOf(SEPARATOR);
+            var keys = new LinkedHashMap<String, Object>();
+            keys.put(CREATION_TIME, OffsetDateTime.parse(value.substring(0, separator)));
+            keys.put(ID, UUID.fromString(value.substring(separator + 1)));
+            return ScrollPosition.forward(keys);
+        } catch (IllegalArgumentException | IndexOutOfBoundsException | DateTimeParseException e) {
+            throw new InvalidCursorException("Invalid cursor: " + cursor);
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package smarcos.implementation.mapper;
+
+import org.springframework.data.domain.Window;
+import org.springframework.util.DigestUtils;
+import smarcos.implementation.entities.Device;
+import smarcos.implementation.exceptions.DeviceVersionMismatchException;
+import smarcos.implementation.repository.DeviceView;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Converts device versions to and from the strong ETags used by the HTTP layer.
+ */
+public final class DeviceETag {
+    private static final String ANY = "*";
+    private static final String QUOTE = "\"";
+
+    private DeviceETag() {}
+
+    public static String toETag(Device device) {
+        return QUOTE + device.getVersion() + QUOTE;
+    }
+
+    /**
+     * Derives the ETag of a page from the id and version of its devices and whether more pages follow. Every change of
+     * a device bumps its version, so the ETag changes whenever the serialized page would, without serializing it.
+     */
+    public static String toETag(Window<DeviceView> devices) {
+        var content = new StringBuilder(devices.size() * 48);
+        for (var device : devices) {
+            content.append(device.id()).append(':').append(device.version()).append(';');
+        }
+        content.append(devices.hasNext());
+        return QUOTE + DigestUtils.md5DigestAsHex(content.toString().getBytes(StandardCharsets.US_ASCII)) + QUOTE;
+    }
+
+    /**
+     * Returns the version required by an If-Match header, or null when any version is accepted.
+     */
+    public static Long toExpectedVersion(String ifMatch) {
+        if (ifMatch == null || ifMatch.isBlank() || ANY.equals(ifMatch.trim())) {
+            return null;
+        }
+        var eTag = ifMatch.trim();
+        if (eTag.length() < 2 || !eTag.startsWith(QUOTE) || !eTag.endsWith(QUOTE)) {
+            throw new DeviceVersionMismatchException("If-Match must be a strong ETag: " + ifMatch);
+        }
+        try {
+            return Long.parseLong(eTag.substring(1, eTag.length() - 1));
+        } catch (NumberFormatException e) {
+            throw new DeviceVersionMismatchException("Unknown device ETag: " + ifMatch);
+        }
+    }
+}
@@ -1,11 +1,28 @@
 package smarcos.implementation.mapper;
 
+import com.model.device.DeviceChangeResponse;
+import com.model.device.DeviceChangesResponse;
+import com.model.device.DeviceCount;
 import com.model.device.DeviceCreationRequest;
 import com.model.device.DeviceResponse;
+import com.model.device.DeviceStateUpdateOutcome;
+import com.model.device.DeviceStateUpdateResult;
+import com.model.device.DeviceStatesUpdateResponse;
+import com.model.device.DeviceStatsResponse;
+import com.model.device.DevicesLookupResponse;
 import com.model.device.DevicesResponse;
+import org.springframework.data.domain.Window;
 import smarcos.implementation.entities.Device;
+import smarcos.implementation.repository.DeviceChangeView;
+import smarcos.implementation.repository.DeviceGroupCount;
+import smarcos.implementation.repository.DeviceStateTransition;
+import smarcos.implementation.repository.DeviceView;
 
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.UUID;
 
 public final class DeviceMapper {
 
@@ -18,17 +35,86 @@ public final class DeviceMapper {
         deviceResponse.setBrand(device.getBrand());
         deviceResponse.setState(device.getState());
         deviceResponse.setCreationTime(device.getCreationTime());
+        deviceResponse.setLastModified(device.getLastModified());
+        deviceResponse.setVersion(device.getVersion());
         return deviceResponse;
     }
 
-    public static DevicesResponse toDevicesResponse(List<Device> devices) {
-        var items = devices.stream().map(DeviceMapper::toDeviceResponse).toList();
+    public static DeviceResponse toDeviceResponse(DeviceView device) {
+        DeviceResponse deviceResponse = new DeviceResponse();
+        deviceResponse.setId(device.id());
+        deviceResponse.setName(device.name());
+        deviceResponse.setBrand(device.brand());
+        deviceResponse.setState(device.state());
+        deviceResponse.setCreationTime(device.creationTime());
+        deviceResponse.setLastModified(device.lastModified());
+        deviceResponse.setVersion(device.version());
+        return deviceResponse;
+    }
+
+    public static DevicesResponse toDevicesResponse(Window<DeviceView> devices) {
+        var items = devices.map(DeviceMapper::toDeviceResponse).getContent();
         var devicesResponse = new DevicesResponse();
         devicesResponse.setItems(items);
         devicesResponse.setTotal(items.size());
+        if (devices.hasNext()) {
+            devicesResponse.setNext(DeviceCursor.encode(devices.positionAt(devices.size() - 1)));
+        }
         return devicesResponse;
     }
 
+    /**
+     * Maps the devices found for the requested ids. Ids requested more than once are reported once.
+     */
+    public static DevicesLookupResponse toDevicesLookupResponse(List<UUID> ids, Map<UUID, Device> devices) {
+        var items = new ArrayList<DeviceResponse>(devices.size());
+        var missing = new ArrayList<UUID>();
+        for (var id : new LinkedHashSet<>(ids)) {
+            var device = devices.get(id);
+            if (device == null) {
+                missing.add(id);
+            } else {
+                items.add(toDeviceResponse(device));
+            }
+        }
+        return new DevicesLookupResponse(items, missing);
+    }
+
+    public static DeviceStatsResponse toDeviceStatsResponse(List<DeviceGroupCount> deviceGroupCounts) {
+        var groups = deviceGroupCounts.stream()
+                .map(group -> new DeviceCount(group.brand(), group.state(), group.count()))
+                .toList();
+        var total = deviceGroupCounts.stream().mapToLong(DeviceGroupCount::count).sum();
+        return new DeviceStatsResponse(total, groups);
+    }
+
+    /**
+     * Maps a page of the change feed. Without changes the reader stays at the sequence number it asked for.
+     */
+    public static DeviceChangesResponse toDeviceChangesResponse(List<DeviceChangeView> changes, long since) {
+        var items = changes.stream().map(DeviceMapper::toDeviceChangeResponse).toList();
+        var next = changes.isEmpty() ? since : changes.getLast().seq();
+        return new DeviceChangesResponse(items, next);
+    }
+
+    public static DeviceChangeResponse toDeviceChangeResponse(DeviceChangeView change) {
+        var deviceChangeResponse = new DeviceChangeResponse(change.seq(), change.type(), change.deviceId(), change.changedAt());
+        if (change.device() != null) {
+            deviceChangeResponse.setDevice(toDeviceResponse(change.device()));
+        }
+        return deviceChangeResponse;
+    }
+
+    public static DeviceStatesUpdateResponse toDeviceStatesUpdateResponse(List<DeviceStateTransition> transitions) {
+        var results = transitions.stream()
+                .map(transition -> new DeviceStateUpdateResult(transition.id(), transition.outcome()))
+                .toList();
+        var updated = (int) transitions.stream()
+                .filter(transition -> transition.outcome() == DeviceStateUpdateOutcome.UPDATED)
+                .count();
+        return new DeviceStatesUpdateResponse(updated, results);
+    }
+
     public static Device toEntity(DeviceCreationRequest deviceCreationRequest) {
         Device device = new Device();
         device.setName(deviceCreationRequest.getName());
@@ -0,0 +1,9 @@
+package smarcos.implementation.repository;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+import smarcos.implementation.entities.DeviceChange;
+
+@Repository
+public interface DeviceChangeRepository extends JpaRepository<DeviceChange, Long>, DeviceChangeRepositoryCustom {
+}
@@ -0,0 +1,32 @@
+package smarcos.implementation.repository;
+
+import com.model.device.DeviceChangeType;
+import org.springframework.data.domain.Limit;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+
+public interface DeviceChangeRepositoryCustom {
+
+    /**
+     * Records a change of the given devices inside the writing transaction. Appends take no lock, so concurrent
+     * writers commit independently of each other.
+     */
+    void append(DeviceChangeType type, Collection<UUID> deviceIds);
+
+    /**
+     * Returns up to limit changes after the given sequence number, oldest first, stopping at {@link #findLatestSeq()}.
+     * Runs on the primary, as a replica's copy of the sequence runs ahead of the numbers actually drawn.
+     */
+    @Transactional
+    List<DeviceChangeView> findChangesAfter(long since, Limit limit);
+
+    /**
+     * The commit horizon: every change up to it has been committed or rolled back, so no change can appear behind one
+     * a reader has already read.
+     */
+    @Transactional
+    long findLatestSeq();
+}
@@ -0,0 +1,124 @@
+package smarcos.implementation.repository;
+
+import com.model.device.DeviceChangeType;
+import jakarta.persistence.EntityManager;
+import org.hibernate.query.NativeQuery;
+import org.springframework.data.domain.Limit;
+import smarcos.implementation.entities.DeviceChange;
+
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Appends to the change log without any lock, so sequence numbers are drawn in statement order rather than commit
+ * order and a transaction may commit a lower number after another one has committed a higher one. Readers therefore
+ * stop at the commit horizon: the highest number of which every lower one has been committed or rolled back.
+ * <p>
+ * A sample pairs the last number drawn with the next transaction id at the time. Appending assigns the transaction id
+ * before it draws a number, so every number up to the sampled one belongs to a transaction with a lower id, and the
+ * sample is below the horizon once the oldest running transaction, pg_snapshot_xmin, has reached that id. Samples are
+ * taken on every read and kept until they are below the horizon, so a long-running writing transaction anywhere in
+ * the cluster holds the feed back until it ends.
+ */
+class DeviceChangeRepositoryImpl implements DeviceChangeRepositoryCustom {
+    // The materialized transaction id is read before the join yields its first row, so before any number is drawn
+    private static final String APPEND = """
+            WITH xact AS MATERIALIZED (SELECT pg_current_xact_id() AS xid)
+            INSERT INTO device_changes (device_id, type)
+            SELECT device_id, :type
+              FROM xact, unnest(:deviceIds) AS device_id""";
+    private static final String LAST_DRAWN = """
+            SELECT CASE WHEN is_called THEN last_value ELSE last_value - 1 END AS seq
+              FROM device_changes_seq_seq""";
+    // The oldest running transaction including the reading one, the next transaction id, and the oldest running
+    // transaction other than the reading one
+    private static final String SNAPSHOT = """
+            SELECT pg_snapshot_xmin(s)::text::bigint AS xmin,
+                   pg_snapshot_xmax(s)::text::bigint AS xmax,
+                   coalesce((SELECT min(x::text::bigint) FROM pg_snapshot_xip(s) AS x),
+                            pg_snapshot_xmax(s)::text::bigint) AS others_xmin
+              FROM pg_current_snapshot() AS s""";
+    private static final String CHANGES_AFTER = """
+            select new smarcos.implementation.repository.DeviceChangeView(c.seq, c.type, c.deviceId, c.changedAt,
+                d.name, d.brand, d.state, d.creationTime, d.lastModified, d.version)
+            from DeviceChange c left join Device d on d.id = c.deviceId
+            where c.seq > :since and c.seq <= :horizon
+            order by c.seq""";
+    private static final int MAX_SAMPLES = 1000;
+
+    private final EntityManager entityManager;
+    // Guards the samples and the horizon
+    private final ReentrantLock lock = new ReentrantLock();
+    // Samples of {last number drawn, next transaction id} above the horizon, oldest first
+    private final ArrayDeque<long[]> samples = new ArrayDeque<>();
+    private long horizon;
+
+    DeviceChangeRepositoryImpl(EntityManager entityManager) {
+        this.entityManager = entityManager;
+    }
+
+    @Override
+    public void append(DeviceChangeType type, Collection<UUID> deviceIds) {
+        NativeQuery<?> query = entityManager.createNativeQuery(APPEND).unwrap(NativeQuery.class);
+        query.setParameter("type", type.name(), String.class)
+                .setParameter("deviceIds", deviceIds.toArray(UUID[]::new), UUID[].class)
+                .addSynchronizedEntityClass(DeviceChange.class)
+                .executeUpdate();
+    }
+
+    @Override
+    public List<DeviceChangeView> findChangesAfter(long since, Limit limit) {
+        var query = entityManager.createQuery(CHANGES_AFTER, DeviceChangeView.class)
+                .setParameter("since", since)
+                .setParameter("horizon", findLatestSeq());
+        if (limit.isLimited()) {
+            query.setMaxResults(limit.max());
+        }
+        return query.getResultList();
+    }
+
+    @Override
+    public long findLatestSeq() {
+        // Read before the snapshot is taken, so every number drawn so far belongs to a transaction below its xmax
+        NativeQuery<Long> lastDrawn = entityManager.createNativeQuery(LAST_DRAWN).unwrap(NativeQuery.class);
+        var seq = lastDrawn.addScalar("seq", Long.class).getSingleResult();
+        NativeQuery<Object[]> snapshot = entityManager.createNativeQuery(SNAPSHOT).unwrap(NativeQuery.class);
+        var row = snapshot.addScalar("xmin", Long.class)
+                .addScalar("xmax", Long.class)
+                .addScalar("others_xmin", Long.class)
+                .getSingleResult();
+        return horizon(seq, (Long) row[0], (Long) row[1], (Long) row[2]);
+    }
+
+    /**
+     * Records the sample and returns the horizon. A transaction reading its own changes sees them below its own
+     * horizon, which is not shared with other readers.
+     */
+    private long horizon(long lastDrawn, long xmin, long xmax, long othersXmin) {
+        lock.lock();
+        try {
+            if (samples.isEmpty() || samples.peekLast()[0] < lastDrawn) {
+                if (samples.size() == MAX_SAMPLES) {
+                    // A later sample covers everything the one it replaces did, it only takes longer to pass
+                    samples.removeLast();
+                }
+                samples.addLast(new long[]{lastDrawn, xmax});
+            }
+            while (!samples.isEmpty() && samples.peekFirst()[1] <= xmin) {
+                horizon = Math.max(horizon, samples.pollFirst()[0]);
+            }
+            var visible = horizon;
+            for (var sample : samples) {
+                if (sample[1] <= othersXmin) {
+                    visible = Math.max(visible, sample[0]);
+                }
+            }
+            return visible;
+        } finally {
+            lock.unlock();
+        }
+    }
+}
@@ -0,0 +1,21 @@
+package smarcos.implementation.repository;
+
+import com.model.device.DeviceChangeType;
+import com.model.device.DeviceState;
+
+import java.time.OffsetDateTime;
+import java.util.UUID;
+
+/**
+ * An entry of the change feed with the current state of its device, or a null device once it has been deleted.
+ */
+public record DeviceChangeView(long seq, DeviceChangeType type, UUID deviceId, OffsetDateTime changedAt, DeviceView device) {
+
+    public DeviceChangeView(long seq, DeviceChangeType type, UUID deviceId, OffsetDateTime changedAt, String name,
+                            String brand, DeviceState state, OffsetDateTime creationTime, OffsetDateTime lastModified,
+                            Long version) {
+        this(seq, type, deviceId, changedAt, version == null
+                ? null
+                : new DeviceView(deviceId, name, brand, state, creationTime, lastModified, version));
+    }
+}
@@ -0,0 +1,25 @@
+package smarcos.implementation.repository;
+
+import org.hibernate.boot.model.FunctionContributions;
+import org.hibernate.boot.model.FunctionContributor;
+import org.hibernate.type.StandardBasicTypes;
+
+/**
+ * Registers the Postgres full-text match and row value comparison, which neither JPQL nor the Criteria API can express,
+ * as query functions. The tsvector expression must stay the same as the one of devices_name_search_idx for the index to
+ * be used.
+ */
+public class DeviceFunctionContributor implements FunctionContributor {
+    public static final String MATCHES_TEXT = "matches_text";
+    public static final String ROW_AFTER = "row_after";
+
+    @Override
+    public void contributeFunctions(FunctionContributions functionContributions) {
+        var booleanType = functionContributions.getTypeConfiguration().getBasicTypeRegistry()
+                .resolve(StandardBasicTypes.BOOLEAN);
+        functionContributions.getFunctionRegistry().registerPattern(MATCHES_TEXT,
+                "(to_tsvector('simple', ?1) @@ websearch_to_tsquery('simple', ?2))", booleanType);
+        // Unlike the equivalent a > ?1 OR (a = ?1 AND b > ?2), a row comparison is an index condition on an (a, b) index
+        functionContributions.getFunctionRegistry().registerPattern(ROW_AFTER, "((?1, ?2) > (?3, ?4))", booleanType);
+    }
+}
@@ -0,0 +1,9 @@
+package smarcos.implementation.repository;
+
+import com.model.device.DeviceState;
+
+/**
+ * Number of devices sharing a brand and state.
+ */
+public record DeviceGroupCount(String brand, DeviceState state, long count) {
+}
@@ -1,17 +1,43 @@
 package smarcos.implementation.repository;
 
-import com.model.device.DeviceState;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 import smarcos.implementation.entities.Device;
 
 import java.util.List;
 import java.util.UUID;
+import java.util.stream.Stream;
 
 @Repository
-public interface DeviceRepository extends JpaRepository<Device, UUID> {
+public interface DeviceRepository extends JpaRepository<Device, UUID>, JpaSpecificationExecutor<Device>,
+        DeviceRepositoryCustom {
 
-    List<Device> findByBrand(String brand);
-    List<Device> findByState(DeviceState state);
-    List<Device> findByBrandAndState(String brand, DeviceState deviceState);
+    /**
+     * Fetches the given devices with one statement whatever their number, unlike an IN list with a placeholder per id.
+     * Declared queries get no transaction of their own, so this one is made read-only to be routed to a replica.
+     */
+    @Transactional(readOnly = true)
+    @Query(value = "SELECT * FROM devices WHERE id = ANY(:ids) AND deleted_at IS NULL", nativeQuery = true)
+    List<Device> findAllByIdIn(@Param("ids") UUID[] ids);
+
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "1000"),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+    })
+    @Query("select d from Device d")
+    Stream<Device> streamAll();
+
+    @Query("""
+            select new smarcos.implementation.repository.DeviceGroupCount(d.brand, d.state, count(d))
+            from Device d
+            group by d.brand, d.state
+            order by d.brand, d.state""")
+    List<DeviceGroupCount> countByBrandAndState();
 }
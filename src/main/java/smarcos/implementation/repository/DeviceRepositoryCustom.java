@@ -0,0 +1,54 @@
+package smarcos.implementation.repository;
+
+import com.model.device.DeviceState;
+import smarcos.implementation.entities.Device;
+
+import java.time.OffsetDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * Conditional writes that check the in-use rule and the expected version in the same statement as the change, so
+ * every mutation is a single round trip. An empty or false result means no row matched and leaves it to the caller
+ * to find out why. Devices marked deleted never match.
+ */
+public interface DeviceRepositoryCustom {
+
+    /**
+     * The database clock, which also stamps last_modified on every write, so creation and modification times of all
+     * instances come from one clock and never go backwards between a create and a later update.
+     */
+    OffsetDateTime currentTime();
+
+    /**
+     * Sets the given non-null values and bumps the version. Name and brand can only change while the device is not in
+     * use, the state always can. A null expected version matches any version.
+     */
+    Optional<Device> update(UUID id, String name, String brand, DeviceState state, Long expectedVersion);
+
+    /**
+     * Marks the device deleted unless it is in use, leaving the row to {@link #purgeDeleted}. A null expected version
+     * matches any version.
+     */
+    boolean deleteUnlessInUse(UUID id, Long expectedVersion);
+
+    /**
+     * Removes up to limit devices marked deleted, oldest tombstones first. Returns the number of devices removed.
+     */
+    int purgeDeleted(int limit);
+
+    /**
+     * Moves the given devices to the target state and bumps their versions, in a single statement. Returns one
+     * outcome per distinct id, in the order they were given.
+     */
+    List<DeviceStateTransition> updateStates(DeviceState target, Collection<UUID> ids);
+
+    /**
+     * Moves up to limit devices matching the non-null filters to the target state and bumps their versions, in a
+     * single statement. Returns the updated devices only, in no particular order; devices already in the target state
+     * are not listed.
+     */
+    List<DeviceStateTransition> updateStates(DeviceState target, String brand, DeviceState state, int limit);
+}
@@ -0,0 +1,180 @@
+package smarcos.implementation.repository;
+
+import com.model.device.DeviceState;
+import com.model.device.DeviceStateUpdateOutcome;
+import jakarta.persistence.EntityManager;
+import org.hibernate.query.NativeQuery;
+import smarcos.implementation.entities.Device;
+
+import java.time.OffsetDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+class DeviceRepositoryImpl implements DeviceRepositoryCustom {
+    private static final String UPDATE = """
+            UPDATE devices
+               SET name = COALESCE(:name, name),
+                   brand = COALESCE(:brand, brand),
+                   state = COALESCE(:state, state),
+                   last_modified = statement_timestamp(),
+                   version = version + 1
+             WHERE id = :id
+               AND deleted_at IS NULL
+               AND (state <> :inUse OR (:name IS NULL AND :brand IS NULL))
+               AND (:version IS NULL OR version = :version)
+            RETURNING *""";
+    private static final String DELETE = """
+            UPDATE devices
+               SET deleted_at = statement_timestamp(),
+                   last_modified = statement_timestamp(),
+                   version = version + 1
+             WHERE id = :id
+               AND deleted_at IS NULL
+               AND state <> :inUse
+               AND (:version IS NULL OR version = :version)""";
+    // Skips tombstones locked by another instance's purge, so instances purging at the same time never wait on each
+    // other
+    private static final String PURGE = """
+            DELETE FROM devices
+             WHERE id IN (
+                SELECT id
+                  FROM devices
+                 WHERE deleted_at IS NOT NULL
+                 ORDER BY deleted_at
+                 LIMIT :limit
+                   FOR UPDATE SKIP LOCKED)""";
+    // Rows are locked in id order so concurrent bulk changes over overlapping devices cannot deadlock. The final
+    // select sees the devices as they were before the update, which tells unchanged devices from missing ones.
+    private static final String UPDATE_STATES_BY_ID = """
+            WITH requested AS (
+                SELECT id, min(ordinal) AS ordinal
+                  FROM unnest(:ids) WITH ORDINALITY AS r(id, ordinal)
+                 GROUP BY id),
+            locked AS (
+                SELECT d.id
+                  FROM devices d
+                  JOIN requested r ON r.id = d.id
+                 WHERE d.state <> :target
+                   AND d.deleted_at IS NULL
+                 ORDER BY d.id
+                   FOR UPDATE OF d),
+            updated AS (
+                UPDATE devices d
+                   SET state = :target,
+                       last_modified = statement_timestamp(),
+                       version = d.version + 1
+                  FROM locked l
+                 WHERE d.id = l.id
+                RETURNING d.id)
+            SELECT r.id,
+                   CASE WHEN u.id IS NOT NULL THEN 'UPDATED'
+                        WHEN d.id IS NOT NULL THEN 'UNCHANGED'
+                        ELSE 'NOT_FOUND' END AS outcome
+              FROM requested r
+              LEFT JOIN updated u ON u.id = r.id
+              LEFT JOIN devices d ON d.id = r.id AND d.deleted_at IS NULL
+             ORDER BY r.ordinal""";
+    // Devices already in the target state are left out, so the result is never larger than the limit
+    private static final String UPDATE_STATES_BY_FILTER = """
+            WITH locked AS (
+                SELECT id
+                  FROM devices
+                 WHERE state <> :target
+                   AND deleted_at IS NULL
+                   AND (:brand IS NULL OR brand = :brand)
+                   AND (:state IS NULL OR state = :state)
+                 ORDER BY id
+                 LIMIT :limit
+                   FOR UPDATE)
+            UPDATE devices d
+               SET state = :target,
+                   last_modified = statement_timestamp(),
+                   version = d.version + 1
+              FROM locked l
+             WHERE d.id = l.id
+            RETURNING d.id, 'UPDATED' AS outcome""";
+    private static final String CURRENT_TIME = "SELECT statement_timestamp() AS now";
+
+    private final EntityManager entityManager;
+
+    DeviceRepositoryImpl(EntityManager entityManager) {
+        this.entityManager = entityManager;
+    }
+
+    @Override
+    public OffsetDateTime currentTime() {
+        NativeQuery<OffsetDateTime> query = entityManager.createNativeQuery(CURRENT_TIME).unwrap(NativeQuery.class);
+        return query.addScalar("now", OffsetDateTime.class).getSingleResult();
+    }
+
+    @Override
+    public Optional<Device> update(UUID id, String name, String brand, DeviceState state, Long expectedVersion) {
+        NativeQuery<Device> query = entityManager.createNativeQuery(UPDATE, Device.class).unwrap(NativeQuery.class);
+        query.setParameter("name", name, String.class)
+                .setParameter("brand", brand, String.class)
+                .setParameter("state", state == null ? null : state.name(), String.class);
+        bindCondition(query, id, expectedVersion);
+        detach(id);
+        return query.getResultStream().findFirst();
+    }
+
+    @Override
+    public boolean deleteUnlessInUse(UUID id, Long expectedVersion) {
+        NativeQuery<?> query = entityManager.createNativeQuery(DELETE).unwrap(NativeQuery.class);
+        bindCondition(query, id, expectedVersion);
+        detach(id);
+        return query.executeUpdate() > 0;
+    }
+
+    @Override
+    public int purgeDeleted(int limit) {
+        NativeQuery<?> query = entityManager.createNativeQuery(PURGE).unwrap(NativeQuery.class);
+        return query.setParameter("limit", limit, Integer.class)
+                .addSynchronizedEntityClass(Device.class)
+                .executeUpdate();
+    }
+
+    @Override
+    public List<DeviceStateTransition> updateStates(DeviceState target, Collection<UUID> ids) {
+        NativeQuery<Object[]> query = entityManager.createNativeQuery(UPDATE_STATES_BY_ID).unwrap(NativeQuery.class);
+        query.setParameter("ids", ids.toArray(UUID[]::new), UUID[].class);
+        return transitions(query, target);
+    }
+
+    @Override
+    public List<DeviceStateTransition> updateStates(DeviceState target, String brand, DeviceState state, int limit) {
+        NativeQuery<Object[]> query = entityManager.createNativeQuery(UPDATE_STATES_BY_FILTER).unwrap(NativeQuery.class);
+        query.setParameter("brand", brand, String.class)
+                .setParameter("state", state == null ? null : state.name(), String.class)
+                .setParameter("limit", limit, Integer.class);
+        return transitions(query, target);
+    }
+
+    private static List<DeviceStateTransition> transitions(NativeQuery<Object[]> query, DeviceState target) {
+        return query.setParameter("target", target.name(), String.class)
+                .addScalar("id", UUID.class)
+                .addScalar("outcome", String.class)
+                .addSynchronizedEntityClass(Device.class)
+                .getResultStream()
+                .map(row -> new DeviceStateTransition((UUID) row[0], DeviceStateUpdateOutcome.valueOf((String) row[1])))
+                .toList();
+    }
+
+    private static void bindCondition(NativeQuery<?> query, UUID id, Long expectedVersion) {
+        query.setParameter("id", id, UUID.class)
+                .setParameter("inUse", DeviceState.IN_USE.name(), String.class)
+                .setParameter("version", expectedVersion, Long.class)
+                .addSynchronizedEntityClass(Device.class);
+    }
+
+    /**
+     * A managed copy of the device would shadow the row returned by the statement and go stale after it, so pending
+     * changes are flushed and the copy is dropped first. Neither touches the database when nothing is pending.
+     */
+    private void detach(UUID id) {
+        entityManager.flush();
+        entityManager.detach(entityManager.getReference(Device.class, id));
+    }
+}
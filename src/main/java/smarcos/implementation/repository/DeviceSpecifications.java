@@ -0,0 +1,87 @@
+package smarcos.implementation.repository;
+
+import com.model.device.DeviceState;
+import org.hibernate.query.criteria.HibernateCriteriaBuilder;
+import org.springframework.data.jpa.domain.Specification;
+import smarcos.implementation.entities.Device;
+
+import java.time.OffsetDateTime;
+import java.util.Collection;
+import java.util.Locale;
+import java.util.UUID;
+
+/**
+ * Filters of device list and search queries. Each one returns null when its criterion is absent, so any combination of
+ * them can be passed to {@link Specification#allOf} and only the given criteria end up in the query. Each filter
+ * matches the expression of an index in the migrations.
+ */
+public final class DeviceSpecifications {
+    private static final String NAME = "name";
+    private static final String BRAND = "brand";
+    private static final String STATE = "state";
+    private static final String CREATION_TIME = "creationTime";
+    private static final String ID = "id";
+    private static final char LIKE_ESCAPE = '\\';
+
+    private DeviceSpecifications() {}
+
+    public static Specification<Device> hasBrand(String brand) {
+        return brand == null ? null : (root, query, builder) -> builder.equal(root.get(BRAND), brand);
+    }
+
+    public static Specification<Device> hasState(DeviceState state) {
+        return state == null ? null : (root, query, builder) -> builder.equal(root.get(STATE), state);
+    }
+
+    public static Specification<Device> hasStateIn(Collection<DeviceState> states) {
+        return states == null || states.isEmpty() ? null : (root, query, builder) -> root.get(STATE).in(states);
+    }
+
+    /**
+     * Devices whose brand starts with the given prefix, ignoring case. Served by the trigram index on lower(brand).
+     */
+    public static Specification<Device> brandStartsWith(String prefix) {
+        if (prefix == null || prefix.isEmpty()) {
+            return null;
+        }
+        var pattern = escapeLike(prefix.toLowerCase(Locale.ROOT)) + "%";
+        return (root, query, builder) -> builder.like(builder.lower(root.get(BRAND)), pattern, LIKE_ESCAPE);
+    }
+
+    /**
+     * Devices whose name contains the words of the given web search style query, which also supports quoted phrases,
+     * {@code or} and {@code -} to exclude a word. Served by the full-text index on the name.
+     */
+    public static Specification<Device> nameMatches(String text) {
+        if (text == null || text.isBlank()) {
+            return null;
+        }
+        // Bound like the other criteria, where literal() would inline the text into the statement
+        return (root, query, builder) -> builder.isTrue(builder.function(DeviceFunctionContributor.MATCHES_TEXT,
+                Boolean.class, root.get(NAME), ((HibernateCriteriaBuilder) builder).value(text)));
+    }
+
+    public static Specification<Device> createdAtOrAfter(OffsetDateTime time) {
+        return time == null ? null : (root, query, builder) -> builder.greaterThanOrEqualTo(root.get(CREATION_TIME), time);
+    }
+
+    public static Specification<Device> createdBefore(OffsetDateTime time) {
+        return time == null ? null : (root, query, builder) -> builder.lessThan(root.get(CREATION_TIME), time);
+    }
+
+    /**
+     * Devices after the given one in (creationTime, id) order, the keyset pagination order. Compared as a single row
+     * value, so Postgres seeks to the position in devices_creation_time_id_idx instead of filtering every earlier row.
+     */
+    public static Specification<Device> after(OffsetDateTime creationTime, UUID id) {
+        return (root, query, builder) -> {
+            var values = (HibernateCriteriaBuilder) builder;
+            return builder.isTrue(builder.function(DeviceFunctionContributor.ROW_AFTER, Boolean.class,
+                    root.get(CREATION_TIME), root.get(ID), values.value(creationTime), values.value(id)));
+        };
+    }
+
+    private static String escapeLike(String value) {
+        return value.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+    }
+}
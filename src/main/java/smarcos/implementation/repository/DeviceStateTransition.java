@@ -0,0 +1,11 @@
+package smarcos.implementation.repository;
+
+import com.model.device.DeviceStateUpdateOutcome;
+
+import java.util.UUID;
+
+/**
+ * Outcome of moving one device to another state in a bulk state change.
+ */
+public record DeviceStateTransition(UUID id, DeviceStateUpdateOutcome outcome) {
+}
@@ -0,0 +1,14 @@
+package smarcos.implementation.repository;
+
+import com.model.device.DeviceState;
+
+import java.time.OffsetDateTime;
+import java.util.UUID;
+
+/**
+ * Read-only projection of a device for list queries. Spring Data selects the columns straight into it, so pages are
+ * not tracked by the persistence context.
+ */
+public record DeviceView(UUID id, String name, String brand, DeviceState state, OffsetDateTime creationTime,
+                         OffsetDateTime lastModified, Long version) {
+}
@@ -1,121 +1,366 @@
 package smarcos.implementation.services;
 
+import com.model.device.DeviceChangeType;
 import com.model.device.DeviceCreationRequest;
 import com.model.device.DevicePartiallyUpdateRequest;
 import com.model.device.DeviceState;
+import com.model.device.DeviceStateUpdateOutcome;
+import com.model.device.DeviceStatesUpdateRequest;
+import jakarta.persistence.EntityManager;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.cache.annotation.CachePut;
+import org.springframework.cache.annotation.Cacheable;
+import org.springframework.data.domain.KeysetScrollPosition;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.domain.ScrollPosition;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.domain.Window;
+import org.springframework.data.jpa.domain.Specification;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import smarcos.implementation.components.DeviceCacheInvalidationBus;
+import smarcos.implementation.components.DeviceChangeNotifier;
+import smarcos.implementation.components.ReplicaLagGuard;
+import smarcos.implementation.config.DeviceCache;
 import smarcos.implementation.entities.Device;
 import smarcos.implementation.exceptions.DeviceInUseException;
 import smarcos.implementation.exceptions.DeviceNotFoundException;
+import smarcos.implementation.exceptions.DeviceVersionMismatchException;
+import smarcos.implementation.exceptions.InvalidDeviceSelectionException;
+import smarcos.implementation.mapper.DeviceCursor;
 import smarcos.implementation.mapper.DeviceMapper;
+import smarcos.implementation.repository.DeviceChangeRepository;
+import smarcos.implementation.repository.DeviceChangeView;
+import smarcos.implementation.repository.DeviceGroupCount;
 import smarcos.implementation.repository.DeviceRepository;
+import smarcos.implementation.repository.DeviceSpecifications;
+import smarcos.implementation.repository.DeviceStateTransition;
+import smarcos.implementation.repository.DeviceView;
 
+import java.time.Duration;
 import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.UUID;
+import java.util.function.Consumer;
 
 @Service
 public class DeviceService {
+    public static final String DEVICES_CACHE = "devices";
+    // Same as the maxItems of the ids of a bulk state change in device-api.yaml
+    public static final int MAX_SELECTED_DEVICES = 10_000;
     private static final Logger LOGGER = LoggerFactory.getLogger(DeviceService.class);
     private static final String DEVICE_NOT_FOUND_WITH_ID = "Device not found with ID: ";
+    private static final Sort PAGE_ORDER = Sort.by(DeviceCursor.CREATION_TIME, DeviceCursor.ID);
+    private static final int EXPORT_CHUNK_SIZE = 1000;
+    // Keep in sync with spring.jpa.properties.hibernate.jdbc.batch_size
+    private static final int INSERT_BATCH_SIZE = 500;
 
     private final DeviceRepository deviceRepository;
+    private final EntityManager entityManager;
+    private final DeviceCacheInvalidationBus deviceCacheInvalidationBus;
+    private final DeviceChangeRepository deviceChangeRepository;
+    private final DeviceChangeNotifier deviceChangeNotifier;
+    private final CacheManager cacheManager;
+    private final ReplicaLagGuard replicaLagGuard;
 
-    public DeviceService(DeviceRepository deviceRepository) {
+    public DeviceService(DeviceRepository deviceRepository, EntityManager entityManager,
+                         DeviceCacheInvalidationBus deviceCacheInvalidationBus,
+                         DeviceChangeRepository deviceChangeRepository, DeviceChangeNotifier deviceChangeNotifier,
+                         CacheManager cacheManager, ReplicaLagGuard replicaLagGuard) {
         this.deviceRepository = deviceRepository;
+        this.entityManager = entityManager;
+        this.deviceCacheInvalidationBus = deviceCacheInvalidationBus;
+        this.deviceChangeRepository = deviceChangeRepository;
+        this.deviceChangeNotifier = deviceChangeNotifier;
+        this.cacheManager = cacheManager;
+        this.replicaLagGuard = replicaLagGuard;
         LOGGER.info("DeviceService initialized with DeviceRepository");
     }
 
     @Transactional
+    @CachePut(cacheNames = DEVICES_CACHE, key = "#result.id")
     public Device createDevice(DeviceCreationRequest deviceCreationRequest) {
         var device = DeviceMapper.toEntity(deviceCreationRequest);
-        device.setCreationTime(OffsetDateTime.now());
-        LOGGER.info("Creating device: {}", device);
-        return deviceRepository.save(device);
+        device.setCreationTime(deviceRepository.currentTime());
+        device.setLastModified(device.getCreationTime());
+        var createdDevice = deviceRepository.save(device);
+        LOGGER.debug("Created device with ID: {}", createdDevice.getId());
+        deviceCacheInvalidationBus.publishCreation(List.of(createdDevice.getId()));
+        deviceChangeRepository.append(DeviceChangeType.CREATED, List.of(createdDevice.getId()));
+        return createdDevice;
     }
 
+    /**
+     * Persists all devices in a single transaction. Inserts are flushed in chunks of the JDBC batch size and the
+     * persistence context is cleared in between, so Hibernate sends batched INSERTs and memory stays bounded.
+     */
     @Transactional
-    public Device updateDevice(UUID id, DeviceCreationRequest deviceCreationRequest) {
-        LOGGER.info("Updating device with ID: {}", id);
-        var existingDevice = deviceRepository.findById(id)
-                .orElseThrow(() -> new DeviceNotFoundException(DEVICE_NOT_FOUND_WITH_ID + id));
-
-        if (existingDevice.isInUse()) {
-            LOGGER.error("Attempted to update a device that is currently in use: {}", existingDevice);
-            throw new DeviceInUseException("Cannot update a device that is currently in use.");
+    public List<UUID> createDevices(List<DeviceCreationRequest> deviceCreationRequests) {
+        LOGGER.info("Creating {} devices.", deviceCreationRequests.size());
+        var creationTime = deviceRepository.currentTime();
+        var ids = new ArrayList<UUID>(deviceCreationRequests.size());
+        for (int from = 0; from < deviceCreationRequests.size(); from += INSERT_BATCH_SIZE) {
+            var devices = deviceCreationRequests
+                    .subList(from, Math.min(from + INSERT_BATCH_SIZE, deviceCreationRequests.size()))
+                    .stream()
+                    .map(DeviceMapper::toEntity)
+                    .toList();
+            devices.forEach(device -> {
+                device.setCreationTime(creationTime);
+                device.setLastModified(creationTime);
+            });
+            deviceRepository.saveAll(devices).forEach(device -> ids.add(device.getId()));
+            entityManager.flush();
+            entityManager.clear();
         }
-        existingDevice.setName(deviceCreationRequest.getName());
-        existingDevice.setBrand(deviceCreationRequest.getBrand());
-        existingDevice.setState(deviceCreationRequest.getState());
+        deviceCacheInvalidationBus.publishCreation(ids);
+        deviceChangeRepository.append(DeviceChangeType.CREATED, ids);
+        return ids;
+    }
+
+    @Transactional
+    @CachePut(cacheNames = DEVICES_CACHE, key = "#id")
+    public Device updateDevice(UUID id, DeviceCreationRequest deviceCreationRequest, Long expectedVersion) {
+        var updatedDevice = deviceRepository.update(id, deviceCreationRequest.getName(), deviceCreationRequest.getBrand(),
+                        deviceCreationRequest.getState(), expectedVersion)
+                .orElseThrow(() -> rejectedWrite(id, expectedVersion, "Cannot update a device that is currently in use."));
 
-        LOGGER.info("Updated device: {}", existingDevice);
-        return deviceRepository.save(existingDevice);
+        LOGGER.debug("Updated device with ID: {} to version {}", id, updatedDevice.getVersion());
+        deviceCacheInvalidationBus.publish(id);
+        deviceChangeRepository.append(DeviceChangeType.UPDATED, List.of(id));
+        return updatedDevice;
     }
 
     @Transactional
-    public Device partiallyUpdateDevice(UUID id, DevicePartiallyUpdateRequest devicePartiallyUpdateRequest) {
-        LOGGER.info("Partially updating device with ID: {}", id);
-        var existingDevice = deviceRepository.findById(id)
-                .orElseThrow(() -> new DeviceNotFoundException(DEVICE_NOT_FOUND_WITH_ID + id));
+    @CachePut(cacheNames = DEVICES_CACHE, key = "#id")
+    public Device partiallyUpdateDevice(UUID id, DevicePartiallyUpdateRequest devicePartiallyUpdateRequest, Long expectedVersion) {
+        var updatedDevice = deviceRepository.update(id, devicePartiallyUpdateRequest.getName(), devicePartiallyUpdateRequest.getBrand(),
+                        devicePartiallyUpdateRequest.getState(), expectedVersion)
+                .orElseThrow(() -> rejectedWrite(id, expectedVersion, "Cannot update name or brand device that is currently in use."));
+
+        LOGGER.debug("Partially updated device with ID: {} to version {}", id, updatedDevice.getVersion());
+        deviceCacheInvalidationBus.publish(id);
+        deviceChangeRepository.append(DeviceChangeType.UPDATED, List.of(id));
+        return updatedDevice;
+    }
 
-        if (existingDevice.isInUse() && isToUpdateNameOrBrand(devicePartiallyUpdateRequest)) {
-            LOGGER.error("Attempted to partially update name or brand device that is currently in use: {}", existingDevice);
-            throw new DeviceInUseException("Cannot update name or brand device that is currently in use.");
+    /**
+     * Moves the devices selected by ids or by filter to the requested state with a single statement. The state may
+     * change while a device is in use, so every device selected by id is either updated, already in that state or not
+     * found. A filter needs at least one criterion and may match at most {@link #MAX_SELECTED_DEVICES} devices to
+     * change, and only the updated devices are returned for it.
+     */
+    @Transactional
+    public List<DeviceStateTransition> updateDeviceStates(DeviceStatesUpdateRequest deviceStatesUpdateRequest) {
+        var ids = deviceStatesUpdateRequest.getIds();
+        var filter = deviceStatesUpdateRequest.getFilter();
+        var byIds = ids != null && !ids.isEmpty();
+        if (byIds == (filter != null)) {
+            throw new InvalidDeviceSelectionException("Select devices either by ids or by filter.");
+        }
+        if (!byIds && filter.getBrand() == null && filter.getState() == null) {
+            throw new InvalidDeviceSelectionException("Filter devices by brand, state or both.");
         }
-        updateExistingDevice(existingDevice, devicePartiallyUpdateRequest);
+        var state = deviceStatesUpdateRequest.getState();
+        var transitions = byIds
+                ? deviceRepository.updateStates(state, ids)
+                : deviceRepository.updateStates(state, filter.getBrand(), filter.getState(), MAX_SELECTED_DEVICES + 1);
+        if (transitions.size() > MAX_SELECTED_DEVICES) {
+            // Rolls the update back, which has touched at most one device more than allowed
+            throw new InvalidDeviceSelectionException("More than " + MAX_SELECTED_DEVICES
+                    + " devices match the filter, narrow it down or select the devices by ids.");
+        }
+        var updatedIds = transitions.stream()
+                .filter(transition -> transition.outcome() == DeviceStateUpdateOutcome.UPDATED)
+                .map(DeviceStateTransition::id)
+                .toList();
 
-        LOGGER.info("Partially updated device: {}", existingDevice);
-        return deviceRepository.save(existingDevice);
+        LOGGER.info("Moved {} of {} selected devices to state {}.", updatedIds.size(), transitions.size(), state);
+        if (!updatedIds.isEmpty()) {
+            deviceCacheInvalidationBus.publishAll(updatedIds);
+            deviceChangeRepository.append(DeviceChangeType.UPDATED, updatedIds);
+        }
+        return transitions;
     }
 
+    /**
+     * Synchronized caching hands misses to {@link DeviceCache#get(Object, java.util.concurrent.Callable)}, which does
+     * not cache the device when it changed while being read.
+     */
     @Transactional(readOnly = true)
+    @Cacheable(cacheNames = DEVICES_CACHE, key = "#id", sync = true)
     public Device getDeviceById(UUID id) {
-        LOGGER.info("Fetch Device with ID: {}", id);
-        return deviceRepository.findById(id)
+        LOGGER.debug("Fetch Device with ID: {}", id);
+        // Refills the cache, so a replica must have replayed the last change of the device
+        return replicaLagGuard.readDevices(List.of(id), () -> deviceRepository.findById(id))
                 .orElseThrow(() -> new DeviceNotFoundException(DEVICE_NOT_FOUND_WITH_ID + id));
     }
 
+    /**
+     * Returns the devices with the given ids that exist, keyed and ordered by id as requested. Cached devices are taken
+     * from the cache and the rest are fetched with a single query and cached, unless they changed meanwhile. Not
+     * transactional, so a lookup served entirely from the cache does not touch the database.
+     */
+    public Map<UUID, Device> findDevicesByIds(List<UUID> ids) {
+        var cache = (DeviceCache) cacheManager.getCache(DEVICES_CACHE);
+        var devices = new LinkedHashMap<UUID, Device>();
+        var misses = new ArrayList<UUID>();
+        var generations = new HashMap<UUID, Long>();
+        for (var id : new LinkedHashSet<>(ids)) {
+            var cachedDevice = cache.get(id, Device.class);
+            devices.put(id, cachedDevice);
+            if (cachedDevice == null) {
+                misses.add(id);
+                generations.put(id, cache.generation(id));
+            }
+        }
+        LOGGER.debug("Fetch {} Devices by ID, {} not cached.", devices.size(), misses.size());
+        if (!misses.isEmpty()) {
+            var fetched = replicaLagGuard.readDevices(misses,
+                    () -> deviceRepository.findAllByIdIn(misses.toArray(UUID[]::new)));
+            for (var device : fetched) {
+                cache.refill(device.getId(), device, generations.get(device.getId()));
+                devices.put(device.getId(), device);
+            }
+        }
+        devices.values().removeIf(Objects::isNull);
+        return devices;
+    }
+
+    /**
+     * Returns a page of device projections, optionally restricted to a state, a brand and a creation time range from
+     * createdAfter inclusive to createdBefore exclusive. They are not entities, so Hibernate keeps no snapshot or
+     * persistence context entry for them.
+     */
     @Transactional(readOnly = true)
-    public List<Device> findDevices(DeviceState state, String brand) {
-        if (state == null && brand == null) {
-            LOGGER.info("Fetch all Devices.");
-            return deviceRepository.findAll();
-        } else if (state == null) {
-            LOGGER.info("Fetch Devices by brand {}.", brand);
-            return deviceRepository.findByBrand(brand);
-        } else if (brand == null) {
-            LOGGER.info("Fetch Devices by state {}.", state);
-            return deviceRepository.findByState(state);
-        } else {
-            LOGGER.info("Fetch Devices by state {} and brand {}.", state, brand);
-            return deviceRepository.findByBrandAndState(brand, state);
+    public Window<DeviceView> findDevices(DeviceState state, String brand, OffsetDateTime createdAfter,
+                                          OffsetDateTime createdBefore, ScrollPosition position, int limit) {
+        LOGGER.debug("Fetch Devices by state {} and brand {} created from {} to {}.", state, brand, createdAfter,
+                createdBefore);
+        var specification = Specification.allOf(
+                DeviceSpecifications.hasState(state),
+                DeviceSpecifications.hasBrand(brand),
+                DeviceSpecifications.createdAtOrAfter(createdAfter),
+                DeviceSpecifications.createdBefore(createdBefore));
+        return findPage(specification, position, limit);
+    }
+
+    /**
+     * Returns a page of the devices matching every given criterion, each of them optional: a full-text query on the
+     * name, a case-insensitive brand prefix, a set of states and a creation time range, from createdAfter inclusive to
+     * createdBefore exclusive.
+     */
+    @Transactional(readOnly = true)
+    public Window<DeviceView> searchDevices(String name, String brandPrefix, List<DeviceState> states,
+                                            OffsetDateTime createdAfter, OffsetDateTime createdBefore,
+                                            ScrollPosition position, int limit) {
+        LOGGER.debug("Search Devices by name {}, brand prefix {}, states {} and creation time from {} to {}.",
+                name, brandPrefix, states, createdAfter, createdBefore);
+        var specification = Specification.allOf(
+                DeviceSpecifications.nameMatches(name),
+                DeviceSpecifications.brandStartsWith(brandPrefix),
+                DeviceSpecifications.hasStateIn(states),
+                DeviceSpecifications.createdAtOrAfter(createdAfter),
+                DeviceSpecifications.createdBefore(createdBefore));
+        return findPage(specification, position, limit);
+    }
+
+    @Transactional(readOnly = true)
+    public List<DeviceGroupCount> countDevices() {
+        LOGGER.debug("Count Devices by brand and state.");
+        return deviceRepository.countByBrandAndState();
+    }
+
+    /**
+     * Returns up to limit changes committed after the given sequence number, waiting up to the given time for one
+     * to arrive when there is none yet. Not transactional: every lookup runs in its own short transaction, so waiting
+     * readers hold no database connection.
+     */
+    public List<DeviceChangeView> findChanges(long since, int limit, Duration wait) {
+        LOGGER.debug("Fetch Device changes after {}.", since);
+        var deadline = System.nanoTime() + wait.toNanos();
+        while (true) {
+            var generation = deviceChangeNotifier.generation();
+            var changes = deviceChangeRepository.findChangesAfter(since, Limit.of(limit));
+            var remaining = deadline - System.nanoTime();
+            if (!changes.isEmpty() || remaining <= 0 || Thread.currentThread().isInterrupted()) {
+                return changes;
+            }
+            deviceChangeNotifier.await(generation, Duration.ofNanos(remaining));
         }
     }
 
-    @Transactional
-    public void deleteDevice(UUID id) {
-        LOGGER.info("Deleting device with ID: {}", id);
-        var existingDevice = deviceRepository.findById(id)
-                .orElseThrow(() -> new DeviceNotFoundException(DEVICE_NOT_FOUND_WITH_ID + id));
+    /**
+     * Reads the page after the given position with a row value comparison rather than Spring Data's keyset scrolling,
+     * whose OR predicate Postgres cannot use as an index condition, so every page costs the same however deep it is.
+     * One device more than the limit is read to tell whether there is a next page.
+     */
+    private Window<DeviceView> findPage(Specification<Device> specification, ScrollPosition position, int limit) {
+        var keys = ((KeysetScrollPosition) position).getKeys();
+        var after = keys.isEmpty() ? null : DeviceSpecifications.after(
+                (OffsetDateTime) keys.get(DeviceCursor.CREATION_TIME), (UUID) keys.get(DeviceCursor.ID));
+        var devices = deviceRepository.findBy(Specification.allOf(specification, after),
+                query -> query.as(DeviceView.class).sortBy(PAGE_ORDER).limit(limit + 1).all());
+        var hasNext = devices.size() > limit;
+        var page = hasNext ? devices.subList(0, limit) : devices;
+        return Window.from(page, index -> DeviceCursor.positionOf(page.get(index)), hasNext);
+    }
 
-        if (existingDevice.isInUse()) {
-            LOGGER.error("Attempted to delete a device that is currently in use: {}", existingDevice);
-            throw new DeviceInUseException("Cannot delete a device that is currently in use.");
+    /**
+     * Streams every device to the given consumer without materializing the whole table. The persistence context is
+     * cleared after each chunk so heap usage stays constant regardless of the number of exported devices.
+     */
+    @Transactional(readOnly = true)
+    public void exportDevices(Consumer<Device> consumer) {
+        LOGGER.info("Export all Devices.");
+        try (var devices = deviceRepository.streamAll()) {
+            var iterator = devices.iterator();
+            long exported = 0;
+            while (iterator.hasNext()) {
+                consumer.accept(iterator.next());
+                if (++exported % EXPORT_CHUNK_SIZE == 0) {
+                    entityManager.clear();
+                }
+            }
+            LOGGER.info("Exported {} Devices.", exported);
         }
-        deviceRepository.delete(existingDevice);
     }
 
-    private boolean isToUpdateNameOrBrand(DevicePartiallyUpdateRequest devicePartiallyUpdateRequest) {
-        return devicePartiallyUpdateRequest.getBrand() != null || devicePartiallyUpdateRequest.getName() != null;
+    @Transactional
+    @CacheEvict(cacheNames = DEVICES_CACHE, key = "#id")
+    public void deleteDevice(UUID id, Long expectedVersion) {
+        LOGGER.debug("Deleting device with ID: {}", id);
+        if (!deviceRepository.deleteUnlessInUse(id, expectedVersion)) {
+            throw rejectedWrite(id, expectedVersion, "Cannot delete a device that is currently in use.");
+        }
+        deviceCacheInvalidationBus.publish(id);
+        deviceChangeRepository.append(DeviceChangeType.DELETED, List.of(id));
     }
 
-    private void updateExistingDevice(Device device, DevicePartiallyUpdateRequest devicePartiallyUpdateRequest){
-        if(devicePartiallyUpdateRequest.getName() != null) device.setName(devicePartiallyUpdateRequest.getName());
-        if(devicePartiallyUpdateRequest.getBrand() != null) device.setBrand(devicePartiallyUpdateRequest.getBrand());
-        if(devicePartiallyUpdateRequest.getState() != null) device.setState(devicePartiallyUpdateRequest.getState());
+    /**
+     * Finds out why a conditional write matched no row. Only runs when the write was rejected, so the happy path
+     * stays a single statement.
+     */
+    private RuntimeException rejectedWrite(UUID id, Long expectedVersion, String inUseMessage) {
+        var existingDevice = deviceRepository.findById(id).orElse(null);
+        if (existingDevice == null) {
+            return new DeviceNotFoundException(DEVICE_NOT_FOUND_WITH_ID + id);
+        }
+        if (expectedVersion != null && !expectedVersion.equals(existingDevice.getVersion())) {
+            LOGGER.debug("Rejected change of device {} at version {}, it is at version {}", id, expectedVersion, existingDevice.getVersion());
+            return new DeviceVersionMismatchException("Device has changed since version " + expectedVersion);
+        }
+        LOGGER.debug("Rejected change of device {}, it is currently in use", id);
+        return new DeviceInUseException(inUseMessage);
     }
 
 }
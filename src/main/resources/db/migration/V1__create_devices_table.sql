@@ -0,0 +1,9 @@
+CREATE TABLE IF NOT EXISTS devices (
+    id            UUID                     NOT NULL,
+    name          VARCHAR(255)             NOT NULL,
+    brand         VARCHAR(255)             NOT NULL,
+    state         VARCHAR(255)             NOT NULL,
+    creation_time TIMESTAMP WITH TIME ZONE NOT NULL,
+    CONSTRAINT devices_pkey PRIMARY KEY (id),
+    CONSTRAINT devices_state_check CHECK (state IN ('AVAILABLE', 'IN_USE', 'INACTIVE'))
+);
@@ -0,0 +1,8 @@
+-- Keyset pagination order of GET /devices. Also serves state-only filters on the large AVAILABLE/INACTIVE subsets.
+CREATE INDEX CONCURRENTLY IF NOT EXISTS devices_creation_time_id_idx ON devices (creation_time, id);
+
+-- Brand and brand + state filters, keeping the keyset order so pages are read straight from the index.
+CREATE INDEX CONCURRENTLY IF NOT EXISTS devices_brand_state_idx ON devices (brand, state, creation_time, id);
+
+-- Devices in use are a small, hot subset.
+CREATE INDEX CONCURRENTLY IF NOT EXISTS devices_in_use_idx ON devices (creation_time, id) WHERE state = 'IN_USE';
@@ -0,0 +1,2 @@
+-- Optimistic locking version, incremented on every change of a device
+ALTER TABLE devices ADD COLUMN IF NOT EXISTS version BIGINT NOT NULL DEFAULT 0;
@@ -0,0 +1,2 @@
+-- Time of the last change of a device, served as Last-Modified. The constant default keeps this a catalog-only change
+ALTER TABLE devices ADD COLUMN IF NOT EXISTS last_modified TIMESTAMP WITH TIME ZONE NOT NULL DEFAULT now();
@@ -0,0 +1,9 @@
+-- Change feed of GET /devices/changes: one row per created, updated or deleted device, numbered in commit order
+CREATE TABLE IF NOT EXISTS device_changes (
+    seq        BIGINT GENERATED ALWAYS AS IDENTITY,
+    device_id  UUID                     NOT NULL,
+    type       VARCHAR(255)             NOT NULL,
+    changed_at TIMESTAMP WITH TIME ZONE NOT NULL DEFAULT statement_timestamp(),
+    CONSTRAINT device_changes_pkey PRIMARY KEY (seq),
+    CONSTRAINT device_changes_type_check CHECK (type IN ('CREATED', 'UPDATED', 'DELETED'))
+);
@@ -0,0 +1,8 @@
+-- Trigram operator classes for brand prefix searches. Trusted, so the database owner can create it.
+CREATE EXTENSION IF NOT EXISTS pg_trgm;
+
+-- Full-text search on device names, GET /devices:search?name=. Product names are not prose, so no stemming.
+CREATE INDEX CONCURRENTLY IF NOT EXISTS devices_name_search_idx ON devices USING gin (to_tsvector('simple', name));
+
+-- Case-insensitive brand prefix searches, GET /devices:search?brand=.
+CREATE INDEX CONCURRENTLY IF NOT EXISTS devices_brand_trgm_idx ON devices USING gin (lower(brand) gin_trgm_ops);
@@ -0,0 +1,6 @@
+-- Tombstone of deleted devices: set by DELETE /devices/{id} and removed, with the row, by the background purger.
+-- Adding a nullable column without a default only changes the catalog.
+ALTER TABLE devices ADD COLUMN IF NOT EXISTS deleted_at TIMESTAMP WITH TIME ZONE;
+
+-- Tombstones waiting to be purged, oldest first. Only they are indexed, so the index stays as small as the backlog.
+CREATE INDEX CONCURRENTLY IF NOT EXISTS devices_deleted_at_idx ON devices (deleted_at) WHERE deleted_at IS NOT NULL;
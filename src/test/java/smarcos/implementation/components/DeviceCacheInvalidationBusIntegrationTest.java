@@ -0,0 +1,221 @@
+package smarcos.implementation.components;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.cache.Cache;
+import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionTemplate;
+import smarcos.implementation.PostgresIntegrationTest;
+import smarcos.implementation.services.DeviceService;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.UUID;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+@Tag("integration")
+class DeviceCacheInvalidationBusIntegrationTest extends PostgresIntegrationTest {
+    private static final String CACHED_DEVICE = "cached device";
+    private static final Duration HEARTBEAT = Duration.ofMillis(200);
+
+    @Autowired
+    private DeviceCacheInvalidationBus deviceCacheInvalidationBus;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private DataSourceProperties dataSourceProperties;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    private DeviceCacheInvalidationBus peerBus;
+    private Cache peerCache;
+    private DeviceChangeNotifier peerNotifier;
+
+    @BeforeEach
+    void setUp() {
+        var peerCacheManager = new ConcurrentMapCacheManager(DeviceService.DEVICES_CACHE);
+        peerCache = peerCacheManager.getCache(DeviceService.DEVICES_CACHE);
+        peerNotifier = new DeviceChangeNotifier(Duration.ofSeconds(1));
+        peerBus = new DeviceCacheInvalidationBus(jdbcTemplate, dataSourceProperties, peerCacheManager, peerNotifier,
+                new ReplicaLagGuard(List.of(), Duration.ofSeconds(5)), true, Duration.ofMillis(100), HEARTBEAT);
+        peerBus.start();
+        awaitPeerListening();
+    }
+
+    @AfterEach
+    void tearDown() {
+        peerBus.stop();
+        assertFalse(peerBus.isRunning());
+    }
+
+    @Test
+    void committedChangesEvictPeerCache() {
+        var id = UUID.randomUUID();
+        peerCache.put(id, CACHED_DEVICE);
+
+        transactionTemplate.executeWithoutResult(status -> deviceCacheInvalidationBus.publish(id));
+
+        assertTrue(await(() -> peerCache.get(id) == null));
+    }
+
+    @Test
+    void rolledBackChangesDoNotEvictPeerCache() throws InterruptedException {
+        var id = UUID.randomUUID();
+        peerCache.put(id, CACHED_DEVICE);
+
+        transactionTemplate.executeWithoutResult(status -> {
+            deviceCacheInvalidationBus.publish(id);
+            status.setRollbackOnly();
+        });
+
+        Thread.sleep(500);
+        assertNotNull(peerCache.get(id));
+    }
+
+    @Test
+    void ownChangesDoNotEvictLocalCache() throws InterruptedException {
+        var id = UUID.randomUUID();
+        peerCache.put(id, CACHED_DEVICE);
+
+        transactionTemplate.executeWithoutResult(status -> peerBus.publish(id));
+
+        Thread.sleep(500);
+        assertNotNull(peerCache.get(id));
+    }
+
+    @Test
+    void malformedNotificationsDoNotStopListener() {
+        var id = UUID.randomUUID();
+        peerCache.put(id, CACHED_DEVICE);
+
+        for (var payload : List.of("no separator", "peer:not-a-uuid", "")) {
+            jdbcTemplate.queryForList("SELECT pg_notify(?, ?)", DeviceCacheInvalidationBus.CHANNEL, payload);
+        }
+        transactionTemplate.executeWithoutResult(status -> deviceCacheInvalidationBus.publish(id));
+
+        assertTrue(await(() -> peerCache.get(id) == null));
+        assertTrue(peerBus.isRunning());
+    }
+
+    @Test
+    void committedBulkChangesEvictPeerCache() {
+        var ids = List.of(UUID.randomUUID(), UUID.randomUUID());
+        ids.forEach(id -> peerCache.put(id, CACHED_DEVICE));
+
+        transactionTemplate.executeWithoutResult(status -> deviceCacheInvalidationBus.publishAll(ids));
+
+        assertTrue(await(() -> peerCache.get(ids.get(0)) == null && peerCache.get(ids.get(1)) == null));
+    }
+
+    @Test
+    void ownBulkChangesEvictLocalCacheOnCommit() {
+        var committed = UUID.randomUUID();
+        var rolledBack = UUID.randomUUID();
+        peerCache.put(committed, CACHED_DEVICE);
+        peerCache.put(rolledBack, CACHED_DEVICE);
+
+        transactionTemplate.executeWithoutResult(status -> {
+            peerBus.publishAll(List.of(committed));
+            assertNotNull(peerCache.get(committed));
+        });
+        transactionTemplate.executeWithoutResult(status -> {
+            peerBus.publishAll(List.of(rolledBack));
+            status.setRollbackOnly();
+        });
+
+        assertNull(peerCache.get(committed));
+        assertNotNull(peerCache.get(rolledBack));
+    }
+
+    @Test
+    void ownChangesWakeChangeFeedReaders() {
+        var generation = peerNotifier.generation();
+
+        transactionTemplate.executeWithoutResult(status -> peerBus.publish(UUID.randomUUID()));
+
+        assertTrue(await(() -> peerNotifier.generation() > generation));
+    }
+
+    @Test
+    void reconnectClearsPeerCache() {
+        var id = UUID.randomUUID();
+        peerCache.put(id, CACHED_DEVICE);
+
+        jdbcTemplate.queryForList("SELECT pg_terminate_backend(pid) FROM pg_stat_activity WHERE application_name = ?",
+                DeviceCacheInvalidationBus.APPLICATION_NAME);
+
+        assertTrue(await(() -> peerCache.get(id) == null));
+        awaitPeerListening();
+    }
+
+    @Test
+    void idleListenerChecksItsConnection() {
+        assertTrue(await(() -> !jdbcTemplate.queryForList(
+                "SELECT pid FROM pg_stat_activity WHERE application_name = ? AND query = 'SELECT 1'",
+                DeviceCacheInvalidationBus.APPLICATION_NAME).isEmpty()));
+        assertTrue(peerBus.isRunning());
+        awaitPeerListening();
+    }
+
+    @Test
+    void disabledBusDoesNotStartOrPublish() {
+        var disabledBus = new DeviceCacheInvalidationBus(jdbcTemplate, dataSourceProperties,
+                new ConcurrentMapCacheManager(DeviceService.DEVICES_CACHE), new DeviceChangeNotifier(Duration.ofSeconds(1)),
+                new ReplicaLagGuard(List.of(), Duration.ofSeconds(5)), false, Duration.ofMillis(100), HEARTBEAT);
+        assertFalse(disabledBus.isAutoStartup());
+        assertTrue(deviceCacheInvalidationBus.isAutoStartup());
+
+        var id = UUID.randomUUID();
+        peerCache.put(id, CACHED_DEVICE);
+        transactionTemplate.executeWithoutResult(status -> disabledBus.publish(id));
+        assertNotNull(peerCache.get(id));
+    }
+
+    /**
+     * The peer clears its cache once LISTEN is registered, so keep probing until a committed change reaches it.
+     */
+    private void awaitPeerListening() {
+        var probe = UUID.randomUUID();
+        assertTrue(await(() -> {
+            peerCache.put(probe, CACHED_DEVICE);
+            transactionTemplate.executeWithoutResult(status -> deviceCacheInvalidationBus.publish(probe));
+            return peerCacheEvicted(probe);
+        }));
+    }
+
+    private boolean peerCacheEvicted(UUID id) {
+        return await(() -> peerCache.get(id) == null, Duration.ofMillis(300));
+    }
+
+    private static boolean await(BooleanSupplier condition) {
+        return await(condition, Duration.ofSeconds(10));
+    }
+
+    private static boolean await(BooleanSupplier condition, Duration timeout) {
+        var deadline = System.nanoTime() + timeout.toNanos();
+        while (System.nanoTime() < deadline) {
+            if (condition.getAsBoolean()) {
+                return true;
+            }
+            try {
+                Thread.sleep(20);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+        return false;
+    }
+}
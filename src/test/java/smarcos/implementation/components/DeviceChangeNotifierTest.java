@@ -0,0 +1,52 @@
+package smarcos.implementation.components;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@Tag("unit")
+class DeviceChangeNotifierTest {
+
+    private final DeviceChangeNotifier deviceChangeNotifier = new DeviceChangeNotifier(Duration.ofSeconds(10));
+
+    @Test
+    void signalWakesUpWaitingReader() throws InterruptedException {
+        var generation = deviceChangeNotifier.generation();
+        var reader = Thread.ofVirtual().start(() -> deviceChangeNotifier.await(generation, Duration.ofSeconds(10)));
+
+        deviceChangeNotifier.signal();
+
+        assertTrue(reader.join(Duration.ofSeconds(5)));
+        assertEquals(generation + 1, deviceChangeNotifier.generation());
+    }
+
+    @Test
+    void awaitReturnsAtOnceAfterMissedSignal() {
+        var generation = deviceChangeNotifier.generation();
+        deviceChangeNotifier.signal();
+
+        var start = System.nanoTime();
+        deviceChangeNotifier.await(generation, Duration.ofSeconds(10));
+        assertTrue(System.nanoTime() - start < Duration.ofSeconds(5).toNanos());
+    }
+
+    @Test
+    void awaitIsCappedAtPollInterval() {
+        var pollingNotifier = new DeviceChangeNotifier(Duration.ofMillis(50));
+
+        var start = System.nanoTime();
+        pollingNotifier.await(pollingNotifier.generation(), Duration.ofSeconds(10));
+        assertTrue(System.nanoTime() - start < Duration.ofSeconds(5).toNanos());
+    }
+
+    @Test
+    void interruptEndsWaitAndKeepsInterruptFlag() {
+        Thread.currentThread().interrupt();
+
+        deviceChangeNotifier.await(deviceChangeNotifier.generation(), Duration.ofSeconds(10));
+        assertTrue(Thread.interrupted());
+    }
+}
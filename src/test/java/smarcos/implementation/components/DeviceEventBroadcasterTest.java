@@ -0,0 +1,254 @@
+package smarcos.implementation.components;
+
+import com.model.device.DeviceChangeType;
+import com.model.device.DeviceState;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentMatchers;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.data.domain.Limit;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import smarcos.implementation.repository.DeviceChangeRepository;
+import smarcos.implementation.repository.DeviceChangeView;
+import smarcos.implementation.repository.DeviceView;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.time.OffsetDateTime;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.function.BooleanSupplier;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@ExtendWith(MockitoExtension.class)
+@Tag("unit")
+class DeviceEventBroadcasterTest {
+    private static final String BRAND = "Brand";
+    private static final Limit BATCH = Limit.of(1000);
+
+    @Mock
+    private DeviceChangeRepository deviceChangeRepository;
+
+    private final DeviceChangeNotifier deviceChangeNotifier = new DeviceChangeNotifier(Duration.ofMillis(50));
+    private DeviceEventBroadcaster deviceEventBroadcaster;
+
+    @AfterEach
+    void tearDown() {
+        if (deviceEventBroadcaster != null && deviceEventBroadcaster.isRunning()) {
+            deviceEventBroadcaster.stop();
+        }
+    }
+
+    @Test
+    void changesReachMatchingSubscribers() {
+        Mockito.when(deviceChangeRepository.findChangesAfter(10, BATCH))
+                .thenReturn(List.of(change(11, DeviceState.IN_USE), change(12, DeviceState.AVAILABLE), deletion(13)));
+        start(16, Duration.ofMinutes(1));
+        var all = new RecordingEmitter();
+        var inUse = new RecordingEmitter();
+        var otherBrand = new RecordingEmitter();
+        deviceEventBroadcaster.subscribe(all, null, null, 10L);
+        deviceEventBroadcaster.subscribe(inUse, DeviceState.IN_USE, BRAND, 10L);
+        deviceEventBroadcaster.subscribe(otherBrand, null, "Other Brand", 10L);
+
+        assertTrue(await(() -> all.ids().size() == 3 && inUse.ids().size() == 1));
+        assertEquals(List.of(11L, 12L, 13L), all.ids());
+        assertEquals(List.of(11L), inUse.ids());
+        assertTrue(otherBrand.ids().isEmpty());
+        assertTrue(all.events.getFirst().contains("event:updated"));
+        assertTrue(all.events.getLast().contains("event:deleted"));
+    }
+
+    @Test
+    void lateSubscriberReplaysFromLastEventId() {
+        Mockito.when(deviceChangeRepository.findLatestSeq()).thenReturn(10L);
+        Mockito.when(deviceChangeRepository.findChangesAfter(5, BATCH))
+                .thenReturn(List.of(change(7, DeviceState.IN_USE), change(10, DeviceState.IN_USE), change(11, DeviceState.IN_USE)));
+        Mockito.when(deviceChangeRepository.findChangesAfter(10, BATCH)).thenReturn(List.of(change(11, DeviceState.IN_USE)));
+        start(16, Duration.ofMinutes(1));
+        deviceEventBroadcaster.subscribe(new RecordingEmitter(), null, null, null);
+        var late = new RecordingEmitter();
+        deviceEventBroadcaster.subscribe(late, null, null, 5L);
+
+        assertTrue(await(() -> late.ids().size() == 3));
+        assertEquals(List.of(7L, 10L, 11L), late.ids());
+    }
+
+    @Test
+    void slowSubscriberIsDisconnectedWhenItsBufferOverflows() {
+        Mockito.when(deviceChangeRepository.findLatestSeq()).thenReturn(0L);
+        Mockito.when(deviceChangeRepository.findChangesAfter(0, BATCH)).thenReturn(List.of(
+                change(1, DeviceState.IN_USE), change(2, DeviceState.IN_USE), change(3, DeviceState.IN_USE),
+                change(4, DeviceState.IN_USE)));
+        start(1, Duration.ofMinutes(1));
+        var stuck = new RecordingEmitter(new CountDownLatch(1));
+        deviceEventBroadcaster.subscribe(stuck, null, null, null);
+
+        assertTrue(await(() -> deviceEventBroadcaster.subscriberCount() == 0));
+        stuck.release.countDown();
+        assertTrue(await(() -> stuck.completed));
+    }
+
+    @Test
+    void idleSubscribersGetHeartbeats() {
+        Mockito.when(deviceChangeRepository.findLatestSeq()).thenReturn(0L);
+        start(16, Duration.ofMillis(20));
+        var idle = new RecordingEmitter();
+        deviceEventBroadcaster.subscribe(idle, null, null, null);
+
+        assertTrue(await(() -> !idle.events.isEmpty()));
+        assertTrue(idle.events.getFirst().startsWith(":heartbeat"));
+        assertTrue(idle.ids().isEmpty());
+    }
+
+    @Test
+    void pumpSurvivesDatabaseErrors() {
+        Mockito.when(deviceChangeRepository.findLatestSeq()).thenReturn(0L);
+        Mockito.when(deviceChangeRepository.findChangesAfter(0, BATCH))
+                .thenThrow(new QueryTimeoutException("timeout"))
+                .thenReturn(List.of(change(1, DeviceState.AVAILABLE)));
+        start(16, Duration.ofMinutes(1));
+        var subscriber = new RecordingEmitter();
+        deviceEventBroadcaster.subscribe(subscriber, null, null, null);
+
+        assertTrue(await(() -> subscriber.ids().size() == 1));
+    }
+
+    @Test
+    void disconnectedClientIsUnsubscribed() {
+        Mockito.when(deviceChangeRepository.findLatestSeq()).thenReturn(0L);
+        Mockito.when(deviceChangeRepository.findChangesAfter(ArgumentMatchers.eq(0L), ArgumentMatchers.any()))
+                .thenReturn(List.of(change(1, DeviceState.AVAILABLE)));
+        start(16, Duration.ofMinutes(1));
+        var gone = new RecordingEmitter() {
+            @Override
+            public void send(SseEventBuilder builder) throws IOException {
+                throw new IOException("Broken pipe");
+            }
+        };
+        deviceEventBroadcaster.subscribe(gone, null, null, null);
+
+        assertTrue(await(() -> deviceEventBroadcaster.subscriberCount() == 0));
+        assertFalse(gone.completed);
+    }
+
+    @Test
+    void subscriberFailingDuringReplayIsUnsubscribed() {
+        Mockito.when(deviceChangeRepository.findChangesAfter(10, BATCH)).thenReturn(List.of());
+        Mockito.when(deviceChangeRepository.findChangesAfter(5, BATCH)).thenReturn(List.of(change(6, DeviceState.AVAILABLE)));
+        start(16, Duration.ofMinutes(1));
+        deviceEventBroadcaster.subscribe(new RecordingEmitter(), null, null, 10L);
+        var gone = new RecordingEmitter() {
+            @Override
+            public void send(SseEventBuilder builder) throws IOException {
+                throw new IOException("Broken pipe");
+            }
+        };
+        deviceEventBroadcaster.subscribe(gone, null, null, 5L);
+
+        assertTrue(await(() -> deviceEventBroadcaster.subscriberCount() == 1));
+    }
+
+    @Test
+    void stopCompletesSubscribers() {
+        Mockito.when(deviceChangeRepository.findLatestSeq()).thenReturn(0L);
+        start(16, Duration.ofMinutes(1));
+        var subscriber = new RecordingEmitter();
+        deviceEventBroadcaster.subscribe(subscriber, null, null, null);
+
+        deviceEventBroadcaster.stop();
+        assertFalse(deviceEventBroadcaster.isRunning());
+        assertEquals(0, deviceEventBroadcaster.subscriberCount());
+        assertTrue(await(() -> subscriber.completed));
+    }
+
+    private void start(int bufferSize, Duration heartbeat) {
+        deviceEventBroadcaster = new DeviceEventBroadcaster(deviceChangeRepository, deviceChangeNotifier, bufferSize, heartbeat);
+        deviceEventBroadcaster.start();
+    }
+
+    private static DeviceChangeView change(long seq, DeviceState state) {
+        var id = UUID.randomUUID();
+        var now = OffsetDateTime.now();
+        return new DeviceChangeView(seq, DeviceChangeType.UPDATED, id, now, new DeviceView(id, "Device", BRAND, state, now, now, seq));
+    }
+
+    private static DeviceChangeView deletion(long seq) {
+        return new DeviceChangeView(seq, DeviceChangeType.DELETED, UUID.randomUUID(), OffsetDateTime.now(), null);
+    }
+
+    private static boolean await(BooleanSupplier condition) {
+        var deadline = System.nanoTime() + Duration.ofSeconds(10).toNanos();
+        while (System.nanoTime() < deadline) {
+            if (condition.getAsBoolean()) {
+                return true;
+            }
+            try {
+                Thread.sleep(10);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+        return false;
+    }
+
+    private static class RecordingEmitter extends SseEmitter {
+        private static final Pattern ID = Pattern.compile("^id:(\\d+)$", Pattern.MULTILINE);
+
+        final List<String> events = new CopyOnWriteArrayList<>();
+        final CountDownLatch release;
+        volatile boolean completed;
+
+        RecordingEmitter() {
+            this(new CountDownLatch(0));
+        }
+
+        RecordingEmitter(CountDownLatch release) {
+            this.release = release;
+        }
+
+        @Override
+        public void send(SseEventBuilder builder) throws IOException {
+            // Like a client that stopped reading: the write blocks and does not react to interrupts
+            var interrupted = false;
+            while (true) {
+                try {
+                    release.await();
+                    break;
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+            var event = new StringBuilder();
+            builder.build().forEach(part -> event.append(part.getData()));
+            events.add(event.toString());
+        }
+
+        @Override
+        public void complete() {
+            completed = true;
+        }
+
+        List<Long> ids() {
+            return events.stream()
+                    .map(ID::matcher)
+                    .filter(Matcher::find)
+                    .map(matcher -> Long.parseLong(matcher.group(1)))
+                    .toList();
+        }
+    }
+}
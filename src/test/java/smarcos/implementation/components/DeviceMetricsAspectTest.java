@@ -0,0 +1,92 @@
+package smarcos.implementation.components;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.Signature;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.junit.jupiter.MockitoExtension;
+import smarcos.implementation.entities.Device;
+import smarcos.implementation.exceptions.DeviceInUseException;
+import smarcos.implementation.exceptions.DeviceNotFoundException;
+import smarcos.implementation.exceptions.DeviceVersionMismatchException;
+
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@ExtendWith(MockitoExtension.class)
+@Tag("unit")
+class DeviceMetricsAspectTest {
+
+    @Mock
+    private ProceedingJoinPoint joinPoint;
+
+    @Mock
+    private Signature signature;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final DeviceMetricsAspect deviceMetricsAspect = new DeviceMetricsAspect(meterRegistry);
+
+    @BeforeEach
+    void setUp() {
+        Mockito.when(joinPoint.getSignature()).thenReturn(signature);
+    }
+
+    @Test
+    void serviceOperationsAreTimedByOutcome() throws Throwable {
+        Mockito.when(signature.getName()).thenReturn("deleteDevice");
+        Mockito.when(joinPoint.proceed())
+                .thenReturn(null)
+                .thenThrow(new DeviceNotFoundException("Device not found"))
+                .thenThrow(new DeviceInUseException("Device in use"))
+                .thenThrow(new DeviceVersionMismatchException("Device has changed since version 1"))
+                .thenThrow(new IllegalStateException("Broken"));
+
+        deviceMetricsAspect.timeServiceOperation(joinPoint);
+        assertThrows(DeviceNotFoundException.class, () -> deviceMetricsAspect.timeServiceOperation(joinPoint));
+        assertThrows(DeviceInUseException.class, () -> deviceMetricsAspect.timeServiceOperation(joinPoint));
+        assertThrows(DeviceVersionMismatchException.class, () -> deviceMetricsAspect.timeServiceOperation(joinPoint));
+        assertThrows(IllegalStateException.class, () -> deviceMetricsAspect.timeServiceOperation(joinPoint));
+
+        for (var outcome : List.of("ok", "not_found", "in_use", "precondition_failed", "error")) {
+            assertEquals(1, meterRegistry.get(DeviceMetricsAspect.SERVICE_TIMER)
+                    .tag("operation", "deleteDevice")
+                    .tag("outcome", outcome)
+                    .timer().count());
+        }
+    }
+
+    @Test
+    void repositoryRowsAreCounted() throws Throwable {
+        Mockito.when(signature.getName()).thenReturn("findAllByIdIn", "findById", "deleteUnlessInUse");
+        Mockito.when(joinPoint.proceed()).thenReturn(List.of(new Device(), new Device()), Optional.empty(), true);
+
+        assertEquals(2, ((List<?>) deviceMetricsAspect.countDeviceRows(joinPoint)).size());
+        assertEquals(Optional.empty(), deviceMetricsAspect.countDeviceRows(joinPoint));
+        assertEquals(true, deviceMetricsAspect.countDeviceRows(joinPoint));
+
+        var rows = meterRegistry.get(DeviceMetricsAspect.REPOSITORY_ROWS).tag("repository", "DeviceRepository");
+        assertEquals(2, rows.tag("method", "findAllByIdIn").summary().totalAmount());
+        assertEquals(1, meterRegistry.get(DeviceMetricsAspect.REPOSITORY_ROWS).tag("method", "findById").summary().count());
+        assertNull(meterRegistry.find(DeviceMetricsAspect.REPOSITORY_ROWS).tag("method", "deleteUnlessInUse").summary());
+    }
+
+    @Test
+    void changeRepositoryRowsAreCounted() throws Throwable {
+        Mockito.when(signature.getName()).thenReturn("findChangesAfter");
+        Mockito.when(joinPoint.proceed()).thenReturn(List.of());
+
+        deviceMetricsAspect.countDeviceChangeRows(joinPoint);
+
+        assertEquals(1, meterRegistry.get(DeviceMetricsAspect.REPOSITORY_ROWS)
+                .tag("repository", "DeviceChangeRepository")
+                .tag("method", "findChangesAfter")
+                .summary().count());
+    }
+}
@@ -0,0 +1,59 @@
+package smarcos.implementation.components;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentMatchers;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+import smarcos.implementation.repository.DeviceRepository;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@ExtendWith(MockitoExtension.class)
+@Tag("unit")
+class DevicePurgerTest {
+    private static final int BATCH_SIZE = 50;
+
+    @Mock
+    private DeviceRepository deviceRepository;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private DevicePurger devicePurger;
+
+    @BeforeEach
+    void setUp() {
+        Mockito.when(transactionManager.getTransaction(ArgumentMatchers.any())).thenReturn(new SimpleTransactionStatus());
+        devicePurger = new DevicePurger(deviceRepository, transactionManager, BATCH_SIZE);
+    }
+
+    @Test
+    void purgeRemovesOneBatchInItsOwnTransaction() {
+        Mockito.when(deviceRepository.purgeDeleted(BATCH_SIZE)).thenReturn(BATCH_SIZE);
+
+        assertEquals(BATCH_SIZE, devicePurger.purge());
+        Mockito.verify(deviceRepository).purgeDeleted(BATCH_SIZE);
+        Mockito.verify(transactionManager).commit(ArgumentMatchers.any());
+    }
+
+    @Test
+    void purgeWithNothingDeletedRemovesNothing() {
+        assertEquals(0, devicePurger.purge());
+        Mockito.verify(transactionManager).commit(ArgumentMatchers.any());
+    }
+
+    @Test
+    void failedPurgeIsRolledBackAndRetriedLater() {
+        Mockito.when(deviceRepository.purgeDeleted(BATCH_SIZE)).thenThrow(new QueryTimeoutException("canceling statement"));
+
+        assertEquals(0, devicePurger.purge());
+        Mockito.verify(transactionManager).rollback(ArgumentMatchers.any());
+    }
+}
@@ -0,0 +1,76 @@
+package smarcos.implementation.components;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@Tag("unit")
+class ReplicaLagGuardTest {
+    private static final UUID FIRST = UUID.randomUUID();
+    private static final UUID SECOND = UUID.randomUUID();
+
+    private final ReplicaLagGuard replicaLagGuard = new ReplicaLagGuard(List.of("replica"), Duration.ofMinutes(1));
+
+    @Test
+    void readsRequireOnlyThePositionsOfTheirDevices() {
+        replicaLagGuard.observePrimary(System.nanoTime(), 0);
+        replicaLagGuard.require(FIRST, 100);
+        replicaLagGuard.require(FIRST, 50);
+        replicaLagGuard.require(SECOND, 200);
+
+        assertEquals(0, replicaLagGuard.requiredPosition());
+        assertEquals(100, required(replicaLagGuard, List.of(FIRST)));
+        assertEquals(200, required(replicaLagGuard, List.of(FIRST, SECOND)));
+        assertEquals(0, required(replicaLagGuard, List.of(UUID.randomUUID())));
+    }
+
+    @Test
+    void nestedReadsKeepTheOuterRequirement() {
+        replicaLagGuard.observePrimary(System.nanoTime(), 0);
+        replicaLagGuard.require(FIRST, 100);
+        replicaLagGuard.pin(List.of(SECOND));
+
+        long inner = replicaLagGuard.readDevices(List.of(FIRST),
+                () -> required(replicaLagGuard, List.of(UUID.randomUUID())));
+        long pinned = replicaLagGuard.readDevices(List.of(FIRST), () -> required(replicaLagGuard, List.of(SECOND)));
+
+        assertEquals(100, inner);
+        assertEquals(Long.MAX_VALUE, pinned);
+        assertEquals(0, replicaLagGuard.requiredPosition());
+    }
+
+    @Test
+    void readsRequireOldestPositionSampledWithinMaxLag() {
+        replicaLagGuard.observePrimary(System.nanoTime() - Duration.ofMinutes(2).toNanos(), 50);
+        replicaLagGuard.observePrimary(System.nanoTime(), 100);
+        replicaLagGuard.observePrimary(System.nanoTime(), 200);
+
+        assertEquals(100, replicaLagGuard.requiredPosition());
+    }
+
+    @Test
+    void readsGoToPrimaryWithoutPositionSampledWithinMaxLag() {
+        assertEquals(Long.MAX_VALUE, replicaLagGuard.requiredPosition());
+
+        replicaLagGuard.observePrimary(System.nanoTime() - Duration.ofMinutes(2).toNanos(), 100);
+        assertEquals(Long.MAX_VALUE, replicaLagGuard.requiredPosition());
+    }
+
+    @Test
+    void withoutReplicasReadsRequireNothing() {
+        var replicaLagGuard = new ReplicaLagGuard(List.of(), Duration.ofMinutes(1));
+        replicaLagGuard.pin(List.of(FIRST));
+
+        assertFalse(replicaLagGuard.isEnabled());
+        assertEquals(0, required(replicaLagGuard, List.of(FIRST)));
+    }
+
+    private static long required(ReplicaLagGuard replicaLagGuard, List<UUID> ids) {
+        return replicaLagGuard.readDevices(ids, replicaLagGuard::requiredPosition);
+    }
+}
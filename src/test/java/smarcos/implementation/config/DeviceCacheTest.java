@@ -0,0 +1,101 @@
+package smarcos.implementation.config;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.model.device.DeviceState;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import smarcos.implementation.entities.Device;
+
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@Tag("unit")
+class DeviceCacheTest {
+    private static final UUID ID = UUID.randomUUID();
+
+    private final DeviceCache cache = new DeviceCache("devices", Caffeine.newBuilder().build());
+
+    @Test
+    void putKeepsNewerVersion() {
+        cache.put(ID, device(2));
+        cache.put(ID, device(1));
+
+        assertEquals(2, cache.get(ID, Device.class).getVersion());
+
+        cache.put(ID, device(3));
+        assertEquals(3, cache.get(ID, Device.class).getVersion());
+    }
+
+    @Test
+    void refillDoesNotOverwriteNewerVersion() {
+        var generation = cache.generation(ID);
+        cache.put(ID, device(2));
+
+        cache.refill(ID, device(1), generation);
+
+        assertEquals(2, cache.get(ID, Device.class).getVersion());
+    }
+
+    @Test
+    void refillAfterEvictionIsDropped() {
+        var generation = cache.generation(ID);
+        cache.evict(ID);
+
+        cache.refill(ID, device(1), generation);
+
+        assertNull(cache.get(ID));
+    }
+
+    @Test
+    void refillAfterClearIsDropped() {
+        var generation = cache.generation(ID);
+        cache.clear();
+
+        cache.refill(ID, device(1), generation);
+
+        assertNull(cache.get(ID));
+    }
+
+    @Test
+    void loadedDeviceIsCached() {
+        var device = device(1);
+
+        assertSame(device, cache.get(ID, () -> device));
+        assertSame(device, cache.get(ID, Device.class));
+    }
+
+    @Test
+    void deviceEvictedWhileLoadingIsReturnedButNotCached() {
+        var device = device(1);
+
+        var loaded = cache.get(ID, () -> {
+            cache.evict(ID);
+            return device;
+        });
+
+        assertSame(device, loaded);
+        assertNull(cache.get(ID));
+    }
+
+    @Test
+    void loaderFailureIsWrapped() {
+        var failure = new IllegalStateException("failed");
+
+        var exception = assertThrows(DeviceCache.ValueRetrievalException.class, () -> cache.get(ID, () -> {
+            throw failure;
+        }));
+        assertSame(failure, exception.getCause());
+        assertNull(cache.get(ID));
+    }
+
+    private static Device device(long version) {
+        var device = new Device();
+        device.setId(ID);
+        device.setName("Device");
+        device.setBrand("Brand");
+        device.setState(DeviceState.AVAILABLE);
+        device.setVersion(version);
+        return device;
+    }
+}
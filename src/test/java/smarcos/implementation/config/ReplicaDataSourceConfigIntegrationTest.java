@@ -0,0 +1,133 @@
+package smarcos.implementation.config;
+
+import com.model.device.DeviceCreationRequest;
+import com.model.device.DeviceState;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.cache.CacheManager;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.bean.override.mockito.MockitoSpyBean;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import smarcos.implementation.PostgresIntegrationTest;
+import smarcos.implementation.components.DeviceCacheInvalidationBus;
+import smarcos.implementation.components.ReplicaLagGuard;
+import smarcos.implementation.services.DeviceService;
+
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.List;
+import java.util.UUID;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Points the replica at the test database. It is not a standby, so the replica always counts as caught up.
+ */
+@SpringBootTest(properties = "device.datasource.replica-urls=${spring.datasource.url}")
+@Tag("integration")
+class ReplicaDataSourceConfigIntegrationTest extends PostgresIntegrationTest {
+    private static final String QUERY = "SELECT 1";
+
+    @MockitoSpyBean
+    private ReplicaDataSource replicaDataSource;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private DeviceService deviceService;
+
+    @Autowired
+    private ReplicaLagGuard replicaLagGuard;
+
+    @Autowired
+    private CacheManager cacheManager;
+
+    @Test
+    void readOnlyTransactionsUseReplica() throws SQLException {
+        var readOnly = new TransactionTemplate(transactionManager);
+        readOnly.setReadOnly(true);
+
+        assertEquals(Integer.valueOf(1), readOnly.execute(status -> jdbcTemplate.queryForObject(QUERY, Integer.class)));
+        Mockito.verify(replicaDataSource).getConnection();
+    }
+
+    @Test
+    void writesUsePrimary() throws SQLException {
+        var readWrite = new TransactionTemplate(transactionManager);
+
+        assertEquals(Integer.valueOf(1), readWrite.execute(status -> jdbcTemplate.queryForObject(QUERY, Integer.class)));
+        assertEquals(1, jdbcTemplate.queryForObject(QUERY, Integer.class));
+        Mockito.verify(replicaDataSource, Mockito.never()).getConnection();
+    }
+
+    @Test
+    void committedWritesPinDevicesToPrimary() {
+        var device = deviceService.createDevice(new DeviceCreationRequest("Device", "Brand", DeviceState.AVAILABLE));
+
+        assertTrue(replicaLagGuard.isEnabled());
+        assertEquals(Long.MAX_VALUE, replicaLagGuard.requiredPosition(device.getId()));
+        assertEquals(device.getName(), deviceService.getDeviceById(device.getId()).getName());
+        deviceService.deleteDevice(device.getId(), null);
+    }
+
+    @Test
+    void lookupMissesUseReplica() throws SQLException {
+        var device = deviceService.createDevice(new DeviceCreationRequest("Device", "Brand", DeviceState.AVAILABLE));
+        cacheManager.getCache(DeviceService.DEVICES_CACHE).evict(device.getId());
+        Mockito.clearInvocations(replicaDataSource);
+
+        assertEquals(device.getName(), deviceService.findDevicesByIds(List.of(device.getId())).get(device.getId()).getName());
+        Mockito.verify(replicaDataSource).getConnection();
+        deviceService.deleteDevice(device.getId(), null);
+    }
+
+    @Test
+    void peerWritesAdvanceGuardForTheirDevices() {
+        var id = UUID.randomUUID();
+
+        // Announced by another instance, so it only reaches this one through the listener. Repeated until the
+        // listener, which registers after startup, hears one
+        assertTrue(await(() -> {
+            announcePeerWrite(id);
+            return replicaLagGuard.requiredPosition(id) > 0;
+        }));
+        assertEquals(0, replicaLagGuard.requiredPosition(UUID.randomUUID()));
+    }
+
+    @Test
+    void primaryPositionIsSampledOnSchedule() {
+        assertTrue(await(() -> replicaLagGuard.requiredPosition() < Long.MAX_VALUE));
+    }
+
+    private void announcePeerWrite(UUID id) {
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            jdbcTemplate.update("CREATE TEMPORARY TABLE peer_write (id uuid) ON COMMIT DROP");
+            jdbcTemplate.queryForList("SELECT pg_notify(?, ?)", DeviceCacheInvalidationBus.CHANNEL, "peer:" + id);
+        });
+    }
+
+    private static boolean await(BooleanSupplier condition) {
+        var deadline = System.nanoTime() + Duration.ofSeconds(10).toNanos();
+        while (System.nanoTime() < deadline) {
+            if (condition.getAsBoolean()) {
+                return true;
+            }
+            try {
+                Thread.sleep(20);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+        return false;
+    }
+}
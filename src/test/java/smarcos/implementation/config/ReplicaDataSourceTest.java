@@ -0,0 +1,235 @@
+package smarcos.implementation.config;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import smarcos.implementation.components.ReplicaLagGuard;
+
+import javax.sql.DataSource;
+import java.io.Closeable;
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@Tag("unit")
+class ReplicaDataSourceTest {
+    private static final Duration RETRY_DELAY = Duration.ofMinutes(1);
+    private static final Duration POSITION_TTL = Duration.ofMinutes(1);
+    private static final UUID DEVICE = UUID.randomUUID();
+
+    private final ReplicaLagGuard replicaLagGuard = new ReplicaLagGuard(List.of("replica"), Duration.ofMinutes(1));
+    private final DataSource primary = Mockito.mock(DataSource.class);
+    private final DataSource first = Mockito.mock(DataSource.class);
+    private final DataSource second = Mockito.mock(DataSource.class);
+    private final Connection primaryConnection = Mockito.mock(Connection.class);
+    private final Connection firstConnection = Mockito.mock(Connection.class);
+    private final Connection secondConnection = Mockito.mock(Connection.class);
+
+    @BeforeEach
+    void setUp() throws SQLException {
+        // Reads without a device requirement accept any replica
+        replicaLagGuard.observePrimary(System.nanoTime(), 0);
+        Mockito.when(primary.getConnection()).thenReturn(primaryConnection);
+        Mockito.when(first.getConnection()).thenReturn(firstConnection);
+        Mockito.when(second.getConnection()).thenReturn(secondConnection);
+    }
+
+    @Test
+    void readsAreSpreadOverReplicas() throws SQLException {
+        var replicaDataSource = new ReplicaDataSource(primary, List.of(first, second), replicaLagGuard, RETRY_DELAY, POSITION_TTL);
+
+        assertSame(firstConnection, replicaDataSource.getConnection());
+        assertSame(secondConnection, replicaDataSource.getConnection());
+        assertSame(firstConnection, replicaDataSource.getConnection());
+        Mockito.verifyNoInteractions(primary, firstConnection, secondConnection);
+    }
+
+    @Test
+    void unreachableReplicaIsSkippedUntilRetryDelayPassed() throws SQLException {
+        Mockito.when(first.getConnection()).thenThrow(new SQLException("Connection refused"));
+        var replicaDataSource = new ReplicaDataSource(primary, List.of(first, second), replicaLagGuard, RETRY_DELAY, POSITION_TTL);
+
+        assertSame(secondConnection, replicaDataSource.getConnection());
+        assertSame(secondConnection, replicaDataSource.getConnection());
+        assertSame(secondConnection, replicaDataSource.getConnection());
+        Mockito.verify(first).getConnection();
+    }
+
+    @Test
+    void replicaIsRetriedOnceRetryDelayPassed() throws SQLException {
+        Mockito.when(first.getConnection()).thenThrow(new SQLException("Connection refused")).thenReturn(firstConnection);
+        var replicaDataSource = new ReplicaDataSource(primary, List.of(first), replicaLagGuard, Duration.ZERO, POSITION_TTL);
+
+        assertSame(primaryConnection, replicaDataSource.getConnection());
+        assertSame(firstConnection, replicaDataSource.getConnection());
+    }
+
+    @Test
+    void primaryServesReadsWhenNoReplicaIsReachable() throws SQLException {
+        Mockito.when(first.getConnection()).thenThrow(new SQLException("Connection refused"));
+        Mockito.when(second.getConnection()).thenThrow(new SQLException("Connection refused"));
+        var replicaDataSource = new ReplicaDataSource(primary, List.of(first, second), replicaLagGuard, RETRY_DELAY, POSITION_TTL);
+
+        assertSame(primaryConnection, replicaDataSource.getConnection());
+        assertSame(primaryConnection, replicaDataSource.getConnection());
+    }
+
+    @Test
+    void readsWithoutRequirementDoNotCheckPositions() throws SQLException {
+        replicaLagGuard.require(DEVICE, 100);
+        var replicaDataSource = new ReplicaDataSource(primary, List.of(first), replicaLagGuard, RETRY_DELAY, POSITION_TTL);
+
+        assertSame(firstConnection, replicaDataSource.getConnection());
+        Mockito.verify(firstConnection, Mockito.never()).createStatement();
+    }
+
+    @Test
+    void laggingReplicaIsSkippedUntilItCatchesUp() throws SQLException {
+        Mockito.when(replayed(firstConnection).getLong(1)).thenReturn(90L, 120L);
+        Mockito.when(replayed(secondConnection).getLong(1)).thenReturn(80L);
+        var replicaDataSource = new ReplicaDataSource(primary, List.of(first, second), replicaLagGuard, RETRY_DELAY,
+                Duration.ZERO);
+
+        assertSame(primaryConnection, readDevice(replicaDataSource, 100));
+        Mockito.verify(firstConnection).close();
+        Mockito.verify(secondConnection).close();
+
+        // The second replica is still behind, the first has caught up
+        assertSame(firstConnection, readDevice(replicaDataSource, 100));
+        Mockito.verify(secondConnection, Mockito.times(2)).close();
+        // Known to be far enough, so no further position check
+        assertSame(firstConnection, readDevice(replicaDataSource, 100));
+        Mockito.verify(firstConnection, Mockito.times(2)).createStatement();
+    }
+
+    @Test
+    void laggingReplicaIsNotCheckedAgainWithinPositionTtl() throws SQLException {
+        Mockito.when(replayed(firstConnection).getLong(1)).thenReturn(90L);
+        var replicaDataSource = new ReplicaDataSource(primary, List.of(first), replicaLagGuard, RETRY_DELAY, POSITION_TTL);
+
+        assertSame(primaryConnection, readDevice(replicaDataSource, 100));
+        assertSame(primaryConnection, readDevice(replicaDataSource, 100));
+        assertSame(primaryConnection, readDevice(replicaDataSource, 100));
+        Mockito.verify(first).getConnection();
+        Mockito.verify(firstConnection).createStatement();
+        // Reads without a requirement still use it
+        assertSame(firstConnection, replicaDataSource.getConnection());
+        Mockito.verify(firstConnection).createStatement();
+    }
+
+    @Test
+    void replicaLaggingMoreThanMaxLagServesNoReads() throws SQLException {
+        Mockito.when(replayed(firstConnection).getLong(1)).thenReturn(90L);
+        var replicaLagGuard = new ReplicaLagGuard(List.of("replica"), Duration.ofMinutes(1));
+        replicaLagGuard.observePrimary(System.nanoTime(), 100);
+        var replicaDataSource = new ReplicaDataSource(primary, List.of(first), replicaLagGuard, RETRY_DELAY, POSITION_TTL);
+
+        assertEquals(100, replicaLagGuard.requiredPosition());
+        assertSame(primaryConnection, replicaDataSource.getConnection());
+    }
+
+    @Test
+    void sampledPrimaryPositionBoundsLag() throws SQLException {
+        var replicaLagGuard = new ReplicaLagGuard(List.of("replica"), Duration.ofMinutes(1));
+        var replicaDataSource = new ReplicaDataSource(primary, List.of(first), replicaLagGuard, RETRY_DELAY, POSITION_TTL);
+        var statement = Mockito.mock(Statement.class);
+        var resultSet = Mockito.mock(ResultSet.class);
+        Mockito.when(primaryConnection.createStatement()).thenReturn(statement);
+        Mockito.when(statement.executeQuery(ReplicaLagGuard.PRIMARY_POSITION)).thenReturn(resultSet);
+        Mockito.when(resultSet.getLong(1)).thenReturn(500L);
+
+        replicaDataSource.samplePrimary();
+
+        assertEquals(500, replicaLagGuard.requiredPosition());
+        Mockito.verify(primaryConnection).close();
+    }
+
+    @Test
+    void failedPrimarySampleLeavesReadsOnPrimary() throws SQLException {
+        var replicaLagGuard = new ReplicaLagGuard(List.of("replica"), Duration.ofMinutes(1));
+        var replicaDataSource = new ReplicaDataSource(primary, List.of(first), replicaLagGuard, RETRY_DELAY, POSITION_TTL);
+        Mockito.when(primary.getConnection()).thenThrow(new SQLException("Connection refused"));
+
+        replicaDataSource.samplePrimary();
+
+        assertEquals(Long.MAX_VALUE, replicaLagGuard.requiredPosition());
+    }
+
+    @Test
+    void pinnedDevicesAreReadFromPrimary() throws SQLException {
+        Mockito.when(replayed(firstConnection).getLong(1)).thenReturn(1000L);
+        replicaLagGuard.pin(List.of(DEVICE));
+        var replicaDataSource = new ReplicaDataSource(primary, List.of(first), replicaLagGuard, RETRY_DELAY, POSITION_TTL);
+
+        assertSame(primaryConnection, readDevice(replicaDataSource, 100));
+        assertSame(firstConnection, replicaDataSource.getConnection());
+    }
+
+    @Test
+    void serverThatIsNotStandbyIsAlwaysCurrent() throws SQLException {
+        Mockito.when(replayed(firstConnection).wasNull()).thenReturn(true);
+        var replicaDataSource = new ReplicaDataSource(primary, List.of(first), replicaLagGuard, RETRY_DELAY, POSITION_TTL);
+
+        assertSame(firstConnection, readDevice(replicaDataSource, 100));
+        assertSame(firstConnection, readDevice(replicaDataSource, Long.MAX_VALUE - 1));
+    }
+
+    @Test
+    void failingPositionCheckMarksReplicaDown() throws SQLException {
+        Mockito.when(firstConnection.createStatement()).thenThrow(new SQLException("Connection reset"));
+        var replicaDataSource = new ReplicaDataSource(primary, List.of(first), replicaLagGuard, RETRY_DELAY, POSITION_TTL);
+
+        assertSame(primaryConnection, readDevice(replicaDataSource, 100));
+        assertSame(primaryConnection, readDevice(replicaDataSource, 100));
+        Mockito.verify(firstConnection).close();
+        Mockito.verify(first).getConnection();
+    }
+
+    @Test
+    void otherCredentialsAreNotSupported() {
+        var replicaDataSource = new ReplicaDataSource(primary, List.of(first), replicaLagGuard, RETRY_DELAY, POSITION_TTL);
+
+        assertThrows(SQLFeatureNotSupportedException.class, () -> replicaDataSource.getConnection("user", "password"));
+    }
+
+    @Test
+    void closeClosesReplicaPools() throws IOException {
+        var pool = Mockito.mock(DataSource.class, Mockito.withSettings().extraInterfaces(Closeable.class));
+        var replicaDataSource = new ReplicaDataSource(primary, List.of(first, pool), replicaLagGuard, RETRY_DELAY, POSITION_TTL);
+
+        replicaDataSource.close();
+
+        Mockito.verify((Closeable) pool).close();
+    }
+
+    /**
+     * Fetches a connection for reading a device whose last change is at the given position.
+     */
+    private Connection readDevice(ReplicaDataSource replicaDataSource, long position) {
+        replicaLagGuard.require(DEVICE, position);
+        return replicaLagGuard.readDevices(List.of(DEVICE), () -> {
+            try {
+                return replicaDataSource.getConnection();
+            } catch (SQLException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+    }
+
+    private static ResultSet replayed(Connection connection) throws SQLException {
+        var statement = Mockito.mock(Statement.class);
+        var resultSet = Mockito.mock(ResultSet.class);
+        Mockito.when(connection.createStatement()).thenReturn(statement);
+        Mockito.when(statement.executeQuery(ReplicaLagGuard.REPLAY_POSITION)).thenReturn(resultSet);
+        return resultSet;
+    }
+}
@@ -1,26 +1,56 @@
 package smarcos.implementation.controllers;
 
+import com.model.device.ApiErrorCode;
+import com.model.device.DeviceChangeType;
 import com.model.device.DeviceCreationRequest;
 import com.model.device.DevicePartiallyUpdateRequest;
 import com.model.device.DeviceState;
+import com.model.device.DeviceStateUpdateOutcome;
+import com.model.device.DeviceStatesUpdateRequest;
 import org.junit.jupiter.api.Tag;
 import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
 import org.mockito.ArgumentMatchers;
 import org.mockito.Mockito;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.data.domain.ScrollPosition;
+import org.springframework.data.domain.Window;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
 import org.springframework.test.context.bean.override.mockito.MockitoBean;
 import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import smarcos.implementation.components.DeviceEventBroadcaster;
 import smarcos.implementation.entities.Device;
+import smarcos.implementation.mapper.DeviceCursor;
 import smarcos.implementation.mapper.DeviceMapper;
+import smarcos.implementation.repository.DeviceChangeView;
+import smarcos.implementation.repository.DeviceGroupCount;
+import smarcos.implementation.repository.DeviceStateTransition;
+import smarcos.implementation.repository.DeviceView;
 import smarcos.implementation.services.DeviceService;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.time.Duration;
 import java.time.OffsetDateTime;
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.stream.IntStream;
 
 import static org.hamcrest.Matchers.startsWith;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
@@ -30,9 +60,15 @@ class DeviceControllerTest {
     @Autowired
     private MockMvc mockMvc;
 
+    @Autowired
+    private DeviceController deviceController;
+
     @MockitoBean
     private DeviceService deviceService;
 
+    @MockitoBean
+    private DeviceEventBroadcaster deviceEventBroadcaster;
+
     private static final String ID = "0d75f424-0ee4-48f8-83cd-c2067ab0c9bb";
     private static final String DEVICE_NAME = "Device Name";
     private static final String DEVICE_BRAND = "Device Brand";
@@ -64,6 +100,100 @@ class DeviceControllerTest {
                 .andExpect(jsonPath("$.creationTime").value(startsWith(device.getCreationTime().toString().substring(0, 23))));
     }
 
+    @Test
+    void createDevicesSuccess() throws Exception {
+        var firstId = UUID.fromString(ID);
+        var secondId = UUID.randomUUID();
+        Mockito.when(deviceService.createDevices(List.of(
+                        new DeviceCreationRequest(DEVICE_NAME, DEVICE_BRAND, DeviceState.AVAILABLE),
+                        new DeviceCreationRequest(DEVICE_NAME, DEVICE_BRAND, DeviceState.IN_USE))))
+                .thenReturn(List.of(firstId, secondId));
+
+        var request = MockMvcRequestBuilders
+                .post("/api/v1/devices:batch")
+                .contentType(DeviceController.APPLICATION_DEVICE_REQUEST_V_1_JSON)
+                .content("""
+                        [
+                          {"name": "Device Name", "brand": "Device Brand", "state": "available"},
+                          {"name": "Device Name", "brand": "Device Brand", "state": "in-use"}
+                        ]""");
+        mockMvc.perform(request)
+                .andExpect(status().isCreated())
+                .andExpect(jsonPath("$.total").value(2))
+                .andExpect(jsonPath("$.ids.[0]").value(firstId.toString()))
+                .andExpect(jsonPath("$.ids.[1]").value(secondId.toString()));
+    }
+
+    @Test
+    void lookupDevicesSuccess() throws Exception {
+        var device = DeviceMapper.toEntity(new DeviceCreationRequest(DEVICE_NAME, DEVICE_BRAND, DeviceState.AVAILABLE));
+        device.setId(UUID.fromString(ID));
+        device.setCreationTime(OffsetDateTime.now());
+        device.setLastModified(device.getCreationTime());
+        device.setVersion(0L);
+        var missingId = UUID.randomUUID();
+        var ids = List.of(missingId, device.getId());
+        Mockito.when(deviceService.findDevicesByIds(ids)).thenReturn(Map.of(device.getId(), device));
+
+        var request = MockMvcRequestBuilders
+                .post("/api/v1/devices:lookup")
+                .contentType(DeviceController.APPLICATION_DEVICE_REQUEST_V_1_JSON)
+                .content("""
+                        ["%s", "%s"]""".formatted(missingId, device.getId()));
+        mockMvc.perform(request)
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.items.length()").value(1))
+                .andExpect(jsonPath("$.items.[0].id").value(ID))
+                .andExpect(jsonPath("$.items.[0].brand").value(DEVICE_BRAND))
+                .andExpect(jsonPath("$.missing.[0]").value(missingId.toString()));
+    }
+
+    @Test
+    void lookupDevicesWithTooManyIdsFails() throws Exception {
+        var ids = IntStream.range(0, 5001).mapToObj(i -> "\"" + UUID.randomUUID() + "\"").toList();
+        var request = MockMvcRequestBuilders
+                .post("/api/v1/devices:lookup")
+                .contentType(DeviceController.APPLICATION_DEVICE_REQUEST_V_1_JSON)
+                .content(ids.toString());
+        mockMvc.perform(request)
+                .andExpect(status().isBadRequest());
+        Mockito.verifyNoInteractions(deviceService);
+    }
+
+    @Test
+    void updateDeviceStatesSuccess() throws Exception {
+        var updatedId = UUID.fromString(ID);
+        var missingId = UUID.randomUUID();
+        Mockito.when(deviceService.updateDeviceStates(new DeviceStatesUpdateRequest(DeviceState.IN_USE).ids(List.of(updatedId, missingId))))
+                .thenReturn(List.of(
+                        new DeviceStateTransition(updatedId, DeviceStateUpdateOutcome.UPDATED),
+                        new DeviceStateTransition(missingId, DeviceStateUpdateOutcome.NOT_FOUND)));
+
+        var request = MockMvcRequestBuilders
+                .patch("/api/v1/devices:batch")
+                .contentType(DeviceController.APPLICATION_DEVICE_REQUEST_V_1_JSON)
+                .content("""
+                        {"state": "in-use", "ids": ["%s", "%s"]}""".formatted(updatedId, missingId));
+        mockMvc.perform(request)
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.updated").value(1))
+                .andExpect(jsonPath("$.results.[0].id").value(updatedId.toString()))
+                .andExpect(jsonPath("$.results.[0].outcome").value(DeviceStateUpdateOutcome.UPDATED.getValue()))
+                .andExpect(jsonPath("$.results.[1].outcome").value(DeviceStateUpdateOutcome.NOT_FOUND.getValue()));
+    }
+
+    @Test
+    void updateDeviceStatesWithTooManyIdsFails() throws Exception {
+        var ids = IntStream.range(0, 10001).mapToObj(i -> "\"" + UUID.randomUUID() + "\"").toList();
+        var request = MockMvcRequestBuilders
+                .patch("/api/v1/devices:batch")
+                .contentType(DeviceController.APPLICATION_DEVICE_REQUEST_V_1_JSON)
+                .content("{\"state\": \"in-use\", \"ids\": " + ids + "}");
+        mockMvc.perform(request)
+                .andExpect(status().isBadRequest());
+        Mockito.verifyNoInteractions(deviceService);
+    }
+
     @Test
     void updateDeviceSuccess() throws Exception {
         var deviceCreationRequest = new DeviceCreationRequest(DEVICE_NAME, DEVICE_BRAND, DeviceState.AVAILABLE);
@@ -72,7 +202,8 @@ class DeviceControllerTest {
         var id = UUID.fromString(ID);
         device.setId(id);
         device.setCreationTime(time);
-        Mockito.when(deviceService.updateDevice(id, deviceCreationRequest)).thenReturn(device);
+        device.setVersion(1L);
+        Mockito.when(deviceService.updateDevice(id, deviceCreationRequest, null)).thenReturn(device);
 
         var request = MockMvcRequestBuilders
                 .put("/api/v1/devices/" + ID)
@@ -85,6 +216,7 @@ class DeviceControllerTest {
                         }""");
         mockMvc.perform(request)
                 .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, "\"1\""))
                 .andExpect(jsonPath("$.id").value(device.getId().toString()))
                 .andExpect(jsonPath("$.name").value(device.getName()))
                 .andExpect(jsonPath("$.brand").value(device.getBrand()))
@@ -102,7 +234,7 @@ class DeviceControllerTest {
         device.setState(DeviceState.AVAILABLE);
         device.setBrand(DEVICE_BRAND);
         device.setCreationTime(time);
-        Mockito.when(deviceService.partiallyUpdateDevice(ArgumentMatchers.any(UUID.class), ArgumentMatchers.any(DevicePartiallyUpdateRequest.class))).thenReturn(device);
+        Mockito.when(deviceService.partiallyUpdateDevice(ArgumentMatchers.any(UUID.class), ArgumentMatchers.any(DevicePartiallyUpdateRequest.class), ArgumentMatchers.isNull())).thenReturn(device);
 
         var request = MockMvcRequestBuilders
                 .patch("/api/v1/devices/" + ID)
@@ -130,12 +262,17 @@ class DeviceControllerTest {
         device.setState(DeviceState.AVAILABLE);
         device.setBrand(DEVICE_BRAND);
         device.setCreationTime(time);
+        device.setLastModified(time);
+        device.setVersion(3L);
         Mockito.when(deviceService.getDeviceById(ArgumentMatchers.any(UUID.class))).thenReturn(device);
 
         var request = MockMvcRequestBuilders
                 .get("/api/v1/devices/" + ID);
         mockMvc.perform(request)
                 .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, "\"3\""))
+                .andExpect(header().dateValue(HttpHeaders.LAST_MODIFIED, time.toInstant().toEpochMilli() / 1000 * 1000))
+                .andExpect(jsonPath("$.version").value(3))
                 .andExpect(jsonPath("$.id").value(device.getId().toString()))
                 .andExpect(jsonPath("$.name").value(device.getName()))
                 .andExpect(jsonPath("$.brand").value(device.getBrand()))
@@ -143,6 +280,75 @@ class DeviceControllerTest {
                 .andExpect(jsonPath("$.creationTime").value(startsWith(device.getCreationTime().toString().substring(0, 23))));
     }
 
+    @Test
+    void getDeviceByIdNotModifiedWithIfNoneMatch() throws Exception {
+        var device = new Device();
+        device.setId(UUID.fromString(ID));
+        device.setLastModified(OffsetDateTime.now());
+        device.setVersion(3L);
+        Mockito.when(deviceService.getDeviceById(UUID.fromString(ID))).thenReturn(device);
+
+        var request = MockMvcRequestBuilders
+                .get("/api/v1/devices/" + ID)
+                .header(HttpHeaders.IF_NONE_MATCH, "\"3\"");
+        mockMvc.perform(request)
+                .andExpect(status().isNotModified())
+                .andExpect(header().string(HttpHeaders.ETAG, "\"3\""))
+                .andExpect(content().string(""));
+    }
+
+    @Test
+    void getDeviceByIdWithStaleIfNoneMatchSuccess() throws Exception {
+        var device = new Device();
+        device.setId(UUID.fromString(ID));
+        device.setName(DEVICE_NAME);
+        device.setLastModified(OffsetDateTime.now());
+        device.setVersion(4L);
+        Mockito.when(deviceService.getDeviceById(UUID.fromString(ID))).thenReturn(device);
+
+        var request = MockMvcRequestBuilders
+                .get("/api/v1/devices/" + ID)
+                .header(HttpHeaders.IF_NONE_MATCH, "\"3\"");
+        mockMvc.perform(request)
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, "\"4\""))
+                .andExpect(jsonPath("$.name").value(DEVICE_NAME));
+    }
+
+    @Test
+    void getDeviceByIdNotModifiedSinceLastModified() throws Exception {
+        var device = new Device();
+        device.setId(UUID.fromString(ID));
+        device.setLastModified(OffsetDateTime.now().minusHours(1));
+        device.setVersion(3L);
+        Mockito.when(deviceService.getDeviceById(UUID.fromString(ID))).thenReturn(device);
+
+        var request = MockMvcRequestBuilders
+                .get("/api/v1/devices/" + ID)
+                .header(HttpHeaders.IF_MODIFIED_SINCE, OffsetDateTime.now().toInstant().toEpochMilli());
+        mockMvc.perform(request)
+                .andExpect(status().isNotModified())
+                .andExpect(content().string(""));
+    }
+
+    @Test
+    void getDeviceStatsSuccess() throws Exception {
+        Mockito.when(deviceService.countDevices()).thenReturn(List.of(
+                new DeviceGroupCount(DEVICE_BRAND, DeviceState.AVAILABLE, 2),
+                new DeviceGroupCount(DEVICE_BRAND, DeviceState.IN_USE, 3)));
+
+        var request = MockMvcRequestBuilders
+                .get("/api/v1/devices/stats");
+        mockMvc.perform(request)
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.total").value(5))
+                .andExpect(jsonPath("$.groups.[0].brand").value(DEVICE_BRAND))
+                .andExpect(jsonPath("$.groups.[0].state").value(DeviceState.AVAILABLE.getValue()))
+                .andExpect(jsonPath("$.groups.[0].count").value(2))
+                .andExpect(jsonPath("$.groups.[1].state").value(DeviceState.IN_USE.getValue()))
+                .andExpect(jsonPath("$.groups.[1].count").value(3));
+    }
+
     @Test
     void getAllDevicesSuccess() throws Exception {
         var device = new Device();
@@ -153,7 +359,7 @@ class DeviceControllerTest {
         device.setState(DeviceState.AVAILABLE);
         device.setBrand(DEVICE_BRAND);
         device.setCreationTime(time);
-        Mockito.when(deviceService.findDevices(null, null)).thenReturn(List.of(device));
+        Mockito.when(deviceService.findDevices(null, null, null, null, ScrollPosition.keyset(), 100)).thenReturn(Window.from(List.of(toView(device)), ScrollPosition::offset));
 
         var request = MockMvcRequestBuilders
                 .get("/api/v1/devices");
@@ -167,12 +373,177 @@ class DeviceControllerTest {
                 .andExpect(jsonPath("$.items.[0].creationTime").value(startsWith(device.getCreationTime().toString().substring(0, 23))));
     }
 
+    @Test
+    void searchDevices() throws Exception {
+        var device = new Device();
+        device.setId(UUID.fromString(ID));
+        device.setName(DEVICE_NAME);
+        device.setBrand(DEVICE_BRAND);
+        device.setState(DeviceState.IN_USE);
+        device.setCreationTime(OffsetDateTime.now());
+        device.setVersion(0L);
+        var createdAfter = OffsetDateTime.parse("2025-01-01T00:00:00Z");
+        Mockito.when(deviceService.searchDevices("phone", "bra", List.of(DeviceState.IN_USE, DeviceState.INACTIVE),
+                        createdAfter, null, ScrollPosition.keyset(), 10))
+                .thenReturn(Window.from(List.of(toView(device)), ScrollPosition::offset));
+
+        var request = MockMvcRequestBuilders
+                .get("/api/v1/devices:search")
+                .param("name", "phone")
+                .param("brand", "bra")
+                .param("state", "in-use", "inactive")
+                .param("createdAfter", "2025-01-01T00:00:00Z")
+                .param("limit", "10");
+        mockMvc.perform(request)
+                .andExpect(status().isOk())
+                .andExpect(header().exists(HttpHeaders.ETAG))
+                .andExpect(jsonPath("$.total").value(1))
+                .andExpect(jsonPath("$.items.[0].id").value(ID))
+                .andExpect(jsonPath("$.items.[0].state").value(DeviceState.IN_USE.getValue()));
+    }
+
+    @Test
+    void findDevicesNotModifiedWithIfNoneMatch() throws Exception {
+        var device = new Device();
+        device.setId(UUID.fromString(ID));
+        device.setCreationTime(OffsetDateTime.now());
+        device.setVersion(0L);
+        Mockito.when(deviceService.findDevices(null, null, null, null, ScrollPosition.keyset(), 100))
+                .thenReturn(Window.from(List.of(toView(device)), ScrollPosition::offset));
+
+        var eTag = mockMvc.perform(MockMvcRequestBuilders.get("/api/v1/devices"))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+        assertNotNull(eTag);
+
+        var request = MockMvcRequestBuilders
+                .get("/api/v1/devices")
+                .header(HttpHeaders.IF_NONE_MATCH, eTag);
+        mockMvc.perform(request)
+                .andExpect(status().isNotModified())
+                .andExpect(content().string(""));
+
+        device.setVersion(1L);
+        Mockito.when(deviceService.findDevices(null, null, null, null, ScrollPosition.keyset(), 100))
+                .thenReturn(Window.from(List.of(toView(device)), ScrollPosition::offset));
+        mockMvc.perform(request)
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.items.[0].version").value(1));
+    }
+
+    @Test
+    void getDeviceChangesSuccess() throws Exception {
+        var device = new Device();
+        device.setId(UUID.fromString(ID));
+        device.setName(DEVICE_NAME);
+        device.setState(DeviceState.IN_USE);
+        device.setVersion(1L);
+        var deletedId = UUID.randomUUID();
+        var time = OffsetDateTime.now();
+        Mockito.when(deviceService.findChanges(41, 2, Duration.ofSeconds(10))).thenReturn(List.of(
+                new DeviceChangeView(42, DeviceChangeType.UPDATED, device.getId(), time, toView(device)),
+                new DeviceChangeView(45, DeviceChangeType.DELETED, deletedId, time, null)));
+
+        var request = MockMvcRequestBuilders
+                .get("/api/v1/devices/changes?since=41&limit=2&wait=10");
+        mockMvc.perform(request)
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.next").value(45))
+                .andExpect(jsonPath("$.items.[0].seq").value(42))
+                .andExpect(jsonPath("$.items.[0].type").value(DeviceChangeType.UPDATED.getValue()))
+                .andExpect(jsonPath("$.items.[0].device.state").value(DeviceState.IN_USE.getValue()))
+                .andExpect(jsonPath("$.items.[1].deviceId").value(deletedId.toString()))
+                .andExpect(jsonPath("$.items.[1].device").doesNotExist());
+    }
+
+    @Test
+    void getDeviceChangesWithoutChangesKeepsPosition() throws Exception {
+        Mockito.when(deviceService.findChanges(0, 100, Duration.ZERO)).thenReturn(List.of());
+
+        var request = MockMvcRequestBuilders
+                .get("/api/v1/devices/changes");
+        mockMvc.perform(request)
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.next").value(0))
+                .andExpect(jsonPath("$.items").isEmpty());
+    }
+
+    @Test
+    void getDeviceChangesWithTooLongWaitFails() throws Exception {
+        var request = MockMvcRequestBuilders
+                .get("/api/v1/devices/changes?wait=31");
+        mockMvc.perform(request)
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void streamDeviceEventsSubscribesWithFilters() throws Exception {
+        var request = MockMvcRequestBuilders
+                .get("/api/v1/devices/events?state=in-use&brand=" + DEVICE_BRAND)
+                .header(DeviceController.LAST_EVENT_ID, "42")
+                .accept(MediaType.TEXT_EVENT_STREAM);
+        mockMvc.perform(request)
+                .andExpect(status().isOk())
+                .andExpect(request().asyncStarted());
+        Mockito.verify(deviceEventBroadcaster).subscribe(ArgumentMatchers.any(SseEmitter.class),
+                ArgumentMatchers.eq(DeviceState.IN_USE), ArgumentMatchers.eq(DEVICE_BRAND), ArgumentMatchers.eq(42L));
+    }
+
+    @Test
+    void streamDeviceEventsUsesEventsTimeout() throws Exception {
+        var request = MockMvcRequestBuilders
+                .get("/api/v1/devices/events")
+                .accept(MediaType.TEXT_EVENT_STREAM);
+        mockMvc.perform(request)
+                .andExpect(request().asyncStarted());
+        var emitter = ArgumentCaptor.forClass(SseEmitter.class);
+        Mockito.verify(deviceEventBroadcaster).subscribe(emitter.capture(), ArgumentMatchers.isNull(),
+                ArgumentMatchers.isNull(), ArgumentMatchers.isNull());
+        assertEquals(Duration.ofMinutes(30).toMillis(), emitter.getValue().getTimeout());
+    }
+
+    @Test
+    void updateDeviceWithIfMatchSuccess() throws Exception {
+        var deviceCreationRequest = new DeviceCreationRequest(DEVICE_NAME, DEVICE_BRAND, DeviceState.AVAILABLE);
+        var device = DeviceMapper.toEntity(deviceCreationRequest);
+        device.setId(UUID.fromString(ID));
+        device.setCreationTime(OffsetDateTime.now());
+        device.setVersion(5L);
+        Mockito.when(deviceService.updateDevice(UUID.fromString(ID), deviceCreationRequest, 4L)).thenReturn(device);
+
+        var request = MockMvcRequestBuilders
+                .put("/api/v1/devices/" + ID)
+                .header(HttpHeaders.IF_MATCH, "\"4\"")
+                .contentType(DeviceController.APPLICATION_DEVICE_REQUEST_V_1_JSON)
+                .content("""
+                        {
+                          "name": "Device Name",
+                          "brand": "Device Brand",
+                          "state": "available"
+                        }""");
+        mockMvc.perform(request)
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, "\"5\""))
+                .andExpect(jsonPath("$.version").value(5));
+    }
+
     @Test
     void deleteDeviceSuccess() throws Exception {
         var request = MockMvcRequestBuilders
                 .delete("/api/v1/devices/" + ID);
         mockMvc.perform(request)
                 .andExpect(status().isNoContent());
+        Mockito.verify(deviceService).deleteDevice(UUID.fromString(ID), null);
+    }
+
+    @Test
+    void deleteDeviceWithAnyIfMatchSuccess() throws Exception {
+        var request = MockMvcRequestBuilders
+                .delete("/api/v1/devices/" + ID)
+                .header(HttpHeaders.IF_MATCH, "*");
+        mockMvc.perform(request)
+                .andExpect(status().isNoContent());
+        Mockito.verify(deviceService).deleteDevice(UUID.fromString(ID), null);
     }
 
     @Test
@@ -185,7 +556,7 @@ class DeviceControllerTest {
         device.setState(DeviceState.IN_USE);
         device.setBrand(DEVICE_BRAND);
         device.setCreationTime(time);
-        Mockito.when(deviceService.findDevices(DeviceState.IN_USE, null)).thenReturn(List.of(device));
+        Mockito.when(deviceService.findDevices(DeviceState.IN_USE, null, null, null, ScrollPosition.keyset(), 100)).thenReturn(Window.from(List.of(toView(device)), ScrollPosition::offset));
 
         var request = MockMvcRequestBuilders
                 .get("/api/v1/devices")
@@ -210,7 +581,7 @@ class DeviceControllerTest {
         device.setState(DeviceState.IN_USE);
         device.setBrand(DEVICE_BRAND);
         device.setCreationTime(time);
-        Mockito.when(deviceService.findDevices(null, DEVICE_BRAND)).thenReturn(List.of(device));
+        Mockito.when(deviceService.findDevices(null, DEVICE_BRAND, null, null, ScrollPosition.keyset(), 100)).thenReturn(Window.from(List.of(toView(device)), ScrollPosition::offset));
 
         var request = MockMvcRequestBuilders
                 .get("/api/v1/devices")
@@ -225,6 +596,29 @@ class DeviceControllerTest {
                 .andExpect(jsonPath("$.items.[0].creationTime").value(startsWith(device.getCreationTime().toString().substring(0, 23))));
     }
 
+    @Test
+    void findDevicesByCreationTimeSuccess() throws Exception {
+        var device = new Device();
+        device.setId(UUID.fromString(ID));
+        device.setName(DEVICE_NAME);
+        device.setState(DeviceState.AVAILABLE);
+        device.setBrand(DEVICE_BRAND);
+        device.setCreationTime(OffsetDateTime.parse("2025-03-15T10:00:00Z"));
+        var createdAfter = OffsetDateTime.parse("2025-03-01T00:00:00Z");
+        var createdBefore = OffsetDateTime.parse("2025-04-01T00:00:00+02:00");
+        Mockito.when(deviceService.findDevices(null, null, createdAfter, createdBefore, ScrollPosition.keyset(), 100))
+                .thenReturn(Window.from(List.of(toView(device)), ScrollPosition::offset));
+
+        var request = MockMvcRequestBuilders
+                .get("/api/v1/devices")
+                .param("createdAfter", "2025-03-01T00:00:00Z")
+                .param("createdBefore", "2025-04-01T00:00:00+02:00");
+        mockMvc.perform(request)
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.total").value(1))
+                .andExpect(jsonPath("$.items.[0].id").value(ID));
+    }
+
     @Test
     void findDevicesByBrandAndStateSuccess() throws Exception {
         var device = new Device();
@@ -235,7 +629,7 @@ class DeviceControllerTest {
         device.setState(DeviceState.IN_USE);
         device.setBrand(DEVICE_BRAND);
         device.setCreationTime(time);
-        Mockito.when(deviceService.findDevices(DeviceState.IN_USE, DEVICE_BRAND)).thenReturn(List.of(device));
+        Mockito.when(deviceService.findDevices(DeviceState.IN_USE, DEVICE_BRAND, null, null, ScrollPosition.keyset(), 100)).thenReturn(Window.from(List.of(toView(device)), ScrollPosition::offset));
 
         var request = MockMvcRequestBuilders
                 .get("/api/v1/devices")
@@ -250,4 +644,157 @@ class DeviceControllerTest {
                 .andExpect(jsonPath("$.items.[0].state").value(device.getState().getValue()))
                 .andExpect(jsonPath("$.items.[0].creationTime").value(startsWith(device.getCreationTime().toString().substring(0, 23))));
     }
-}
\ No newline at end of file
+
+    @Test
+    void findDevicesReturnsNextCursorWhenMoreDevicesExist() throws Exception {
+        var device = new Device();
+        var time = OffsetDateTime.parse("2025-07-01T10:15:30.123456Z");
+        var id = UUID.fromString(ID);
+        device.setId(id);
+        device.setName(DEVICE_NAME);
+        device.setState(DeviceState.AVAILABLE);
+        device.setBrand(DEVICE_BRAND);
+        device.setCreationTime(time);
+        var position = ScrollPosition.forward(Map.of(DeviceCursor.CREATION_TIME, time, DeviceCursor.ID, id));
+        Mockito.when(deviceService.findDevices(null, null, null, null, ScrollPosition.keyset(), 1))
+                .thenReturn(Window.from(List.of(toView(device)), index -> position, true));
+
+        var request = MockMvcRequestBuilders
+                .get("/api/v1/devices")
+                .param("limit", "1");
+        mockMvc.perform(request)
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.total").value(1))
+                .andExpect(jsonPath("$.next").value(DeviceCursor.encode(position)));
+    }
+
+    @Test
+    void findDevicesWithCursorSuccess() throws Exception {
+        var time = OffsetDateTime.parse("2025-07-01T10:15:30.123456Z");
+        var id = UUID.fromString(ID);
+        var position = ScrollPosition.forward(Map.of(DeviceCursor.CREATION_TIME, time, DeviceCursor.ID, id));
+        Mockito.when(deviceService.findDevices(null, null, null, null, DeviceCursor.decode(DeviceCursor.encode(position)), 100))
+                .thenReturn(Window.from(List.of(), ScrollPosition::offset));
+
+        var request = MockMvcRequestBuilders
+                .get("/api/v1/devices")
+                .param("cursor", DeviceCursor.encode(position));
+        mockMvc.perform(request)
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.total").value(0))
+                .andExpect(jsonPath("$.next").doesNotExist());
+    }
+
+    @Test
+    void exportDevicesStreamsNdjson() throws Exception {
+        var device = new Device();
+        device.setId(UUID.fromString(ID));
+        device.setName(DEVICE_NAME);
+        device.setState(DeviceState.AVAILABLE);
+        device.setBrand(DEVICE_BRAND);
+        device.setCreationTime(OffsetDateTime.now());
+        Mockito.doAnswer(invocation -> {
+            Consumer<Device> consumer = invocation.getArgument(0);
+            consumer.accept(device);
+            consumer.accept(device);
+            return null;
+        }).when(deviceService).exportDevices(ArgumentMatchers.any());
+
+        var result = mockMvc.perform(MockMvcRequestBuilders.get("/api/v1/devices/export"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        var body = mockMvc.perform(MockMvcRequestBuilders.asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(DeviceController.APPLICATION_NDJSON))
+                .andReturn().getResponse().getContentAsString();
+
+        var lines = body.split("\n");
+        assertEquals(2, lines.length);
+        assertTrue(lines[0].startsWith("{\"id\":\"" + ID + "\""));
+        assertTrue(body.endsWith("\n"));
+    }
+
+    @Test
+    void exportDevicesPropagatesWriteFailures() {
+        var device = new Device();
+        device.setId(UUID.fromString(ID));
+        device.setName(DEVICE_NAME);
+        device.setState(DeviceState.AVAILABLE);
+        device.setBrand(DEVICE_BRAND);
+        device.setCreationTime(OffsetDateTime.now());
+        Mockito.doAnswer(invocation -> {
+            Consumer<Device> consumer = invocation.getArgument(0);
+            IntStream.range(0, 1000).forEach(i -> consumer.accept(device));
+            return null;
+        }).when(deviceService).exportDevices(ArgumentMatchers.any());
+
+        var body = deviceController.exportDevices().getBody();
+        assertNotNull(body);
+        assertThrows(UncheckedIOException.class, () -> body.writeTo(new OutputStream() {
+            @Override
+            public void write(int b) throws IOException {
+                throw new IOException("Connection reset by peer");
+            }
+        }));
+    }
+
+    @Test
+    void exportDevicesBeyondLimitAreRejected() throws Exception {
+        var exporting = new CountDownLatch(2);
+        var finish = new CountDownLatch(1);
+        Mockito.doAnswer(invocation -> {
+            exporting.countDown();
+            finish.await();
+            return null;
+        }).when(deviceService).exportDevices(ArgumentMatchers.any());
+        var first = Thread.ofVirtual().start(() -> export(deviceController.exportDevices().getBody()));
+        var second = Thread.ofVirtual().start(() -> export(deviceController.exportDevices().getBody()));
+        try {
+            assertTrue(exporting.await(5, TimeUnit.SECONDS));
+            var rejected = mockMvc.perform(MockMvcRequestBuilders.get("/api/v1/devices/export"))
+                    .andExpect(request().asyncStarted())
+                    .andReturn();
+            mockMvc.perform(MockMvcRequestBuilders.asyncDispatch(rejected))
+                    .andExpect(status().isServiceUnavailable())
+                    .andExpect(header().string(HttpHeaders.RETRY_AFTER, "30"))
+                    .andExpect(jsonPath("$.code").value(ApiErrorCode.SERVICE_UNAVAILABLE.getValue()));
+        } finally {
+            finish.countDown();
+        }
+        assertTrue(first.join(Duration.ofSeconds(5)));
+        assertTrue(second.join(Duration.ofSeconds(5)));
+
+        var result = mockMvc.perform(MockMvcRequestBuilders.get("/api/v1/devices/export"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        mockMvc.perform(MockMvcRequestBuilders.asyncDispatch(result))
+                .andExpect(status().isOk());
+    }
+
+    @Test
+    void exportDevicesThatNeverStartHoldNoPermit() throws Exception {
+        // Bodies dropped before they run, as when the client aborts or the request times out first
+        deviceController.exportDevices();
+        deviceController.exportDevices();
+        deviceController.exportDevices();
+
+        var result = mockMvc.perform(MockMvcRequestBuilders.get("/api/v1/devices/export"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        mockMvc.perform(MockMvcRequestBuilders.asyncDispatch(result))
+                .andExpect(status().isOk());
+    }
+
+    private static void export(StreamingResponseBody body) {
+        try {
+            body.writeTo(OutputStream.nullOutputStream());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static DeviceView toView(Device device) {
+        return new DeviceView(device.getId(), device.getName(), device.getBrand(), device.getState(), device.getCreationTime(),
+                device.getLastModified(), device.getVersion());
+    }
+}
@@ -0,0 +1,55 @@
+package smarcos.implementation.entities;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@Tag("unit")
+class UuidV7GeneratorTest {
+
+    @Test
+    void generatesVersion7Uuids() {
+        var before = System.currentTimeMillis();
+        var id = new UuidV7Generator().generateUuid(null);
+
+        assertEquals(7, id.version());
+        assertEquals(2, id.variant());
+        // The counter may run a few milliseconds ahead of the clock
+        assertTrue(timestamp(id) >= before && timestamp(id) < System.currentTimeMillis() + 1000, id::toString);
+    }
+
+    @Test
+    void idsAreOrderedByGeneration() {
+        var ids = IntStream.range(0, 100_000).mapToObj(i -> UuidV7Generator.next()).toList();
+
+        var sorted = new ArrayList<>(ids);
+        Collections.sort(sorted);
+        assertEquals(ids, sorted);
+        assertEquals(ids.size(), new HashSet<>(ids).size());
+    }
+
+    @Test
+    void idsAreUniqueAcrossThreads() throws InterruptedException {
+        var ids = new ConcurrentLinkedQueue<UUID>();
+        try (var executor = Executors.newFixedThreadPool(8)) {
+            for (int thread = 0; thread < 8; thread++) {
+                executor.execute(() -> IntStream.range(0, 10_000).forEach(i -> ids.add(UuidV7Generator.next())));
+            }
+        }
+
+        assertEquals(80_000, new HashSet<>(ids).size());
+    }
+
+    private static long timestamp(UUID id) {
+        return id.getMostSignificantBits() >>> 16;
+    }
+}
@@ -0,0 +1,30 @@
+package smarcos.implementation.exceptions;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@Tag("unit")
+class ClientErrorExceptionTest {
+
+    @Test
+    void clientErrorsDoNotCaptureStackTraces() {
+        var exceptions = List.of(
+                new DeviceNotFoundException("Device not found"),
+                new DeviceInUseException("Device in use"),
+                new DeviceVersionMismatchException("Device has changed"),
+                new InvalidCursorException("Invalid cursor"),
+                new InvalidDeviceSelectionException("Invalid selection"));
+
+        for (var exception : exceptions) {
+            assertEquals(0, exception.getStackTrace().length);
+            assertNull(exception.getCause());
+            exception.addSuppressed(new IllegalStateException());
+            assertEquals(0, exception.getSuppressed().length);
+        }
+        assertEquals("Device not found", exceptions.getFirst().getMessage());
+    }
+}
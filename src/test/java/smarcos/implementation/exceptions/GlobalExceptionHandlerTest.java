@@ -2,20 +2,27 @@ package smarcos.implementation.exceptions;
 
 import com.model.device.ApiErrorCode;
 import com.model.device.DeviceCreationRequest;
+import com.model.device.DeviceStatesUpdateRequest;
 import org.junit.jupiter.api.Tag;
 import org.junit.jupiter.api.Test;
 import org.mockito.ArgumentMatchers;
 import org.mockito.Mockito;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.http.HttpHeaders;
 import org.springframework.test.context.bean.override.mockito.MockitoBean;
 import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
+import org.springframework.jdbc.CannotGetJdbcConnectionException;
+import org.springframework.transaction.CannotCreateTransactionException;
+import smarcos.implementation.components.DeviceEventBroadcaster;
 import smarcos.implementation.controllers.DeviceController;
 import smarcos.implementation.services.DeviceService;
 
 import java.util.UUID;
 
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
@@ -29,6 +36,9 @@ class GlobalExceptionHandlerTest {
     @MockitoBean
     private DeviceService deviceService;
 
+    @MockitoBean
+    private DeviceEventBroadcaster deviceEventBroadcaster;
+
     @Test
     void handleHttpMessageNotReadableException() throws Exception {
         var request = MockMvcRequestBuilders
@@ -52,6 +62,17 @@ class GlobalExceptionHandlerTest {
                 .andExpect(jsonPath("$.code").value(ApiErrorCode.BAD_REQUEST.getValue()));
     }
 
+    @Test
+    void handleMethodArgumentTypeMismatchException() throws Exception {
+        var request = MockMvcRequestBuilders
+                .get("/api/v1/devices:search")
+                .param("state", "broken");
+
+        mockMvc.perform(request)
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.code").value(ApiErrorCode.BAD_REQUEST.getValue()));
+    }
+
     @Test
     void handleHttpMediaTypeNotSupportedException() throws Exception {
         var request = MockMvcRequestBuilders
@@ -118,7 +139,7 @@ class GlobalExceptionHandlerTest {
     @Test
     void handleDeviceNotFoundException() throws Exception {
         Mockito.doThrow(DeviceNotFoundException.class)
-                .when(deviceService).updateDevice(ArgumentMatchers.any(UUID.class), ArgumentMatchers.any(DeviceCreationRequest.class));
+                .when(deviceService).updateDevice(ArgumentMatchers.any(UUID.class), ArgumentMatchers.any(DeviceCreationRequest.class), ArgumentMatchers.any());
         var request = MockMvcRequestBuilders
                 .put("/api/v1/devices/0d75f424-0ee4-48f8-83cd-c2067ab0c9bb")
                 .contentType(DeviceController.APPLICATION_DEVICE_REQUEST_V_1_JSON)
@@ -137,7 +158,7 @@ class GlobalExceptionHandlerTest {
     @Test
     void handleDeviceInUseException() throws Exception {
         Mockito.doThrow(DeviceInUseException.class)
-                .when(deviceService).updateDevice(ArgumentMatchers.any(UUID.class), ArgumentMatchers.any(DeviceCreationRequest.class));
+                .when(deviceService).updateDevice(ArgumentMatchers.any(UUID.class), ArgumentMatchers.any(DeviceCreationRequest.class), ArgumentMatchers.any());
         var request = MockMvcRequestBuilders
                 .put("/api/v1/devices/0d75f424-0ee4-48f8-83cd-c2067ab0c9bb")
                 .contentType(DeviceController.APPLICATION_DEVICE_REQUEST_V_1_JSON)
@@ -152,4 +173,129 @@ class GlobalExceptionHandlerTest {
                 .andExpect(status().isConflict())
                 .andExpect(jsonPath("$.code").value(ApiErrorCode.DEVICE_IN_USE.getValue()));
     }
-}
\ No newline at end of file
+
+    @Test
+    void handleDeviceVersionMismatchException() throws Exception {
+        Mockito.doThrow(DeviceVersionMismatchException.class)
+                .when(deviceService).updateDevice(ArgumentMatchers.any(UUID.class), ArgumentMatchers.any(DeviceCreationRequest.class), ArgumentMatchers.eq(1L));
+        var request = MockMvcRequestBuilders
+                .put("/api/v1/devices/0d75f424-0ee4-48f8-83cd-c2067ab0c9bb")
+                .header(HttpHeaders.IF_MATCH, "\"1\"")
+                .contentType(DeviceController.APPLICATION_DEVICE_REQUEST_V_1_JSON)
+                .content("""
+                        {
+                          "name": "Device Name",
+                          "brand": "Device Brand",
+                          "state": "available"
+                        }""");
+
+        mockMvc.perform(request)
+                .andExpect(status().isPreconditionFailed())
+                .andExpect(jsonPath("$.code").value(ApiErrorCode.PRECONDITION_FAILED.getValue()));
+    }
+
+    @Test
+    void handleMalformedIfMatch() throws Exception {
+        var request = MockMvcRequestBuilders
+                .delete("/api/v1/devices/0d75f424-0ee4-48f8-83cd-c2067ab0c9bb")
+                .header(HttpHeaders.IF_MATCH, "W/\"1\"");
+
+        mockMvc.perform(request)
+                .andExpect(status().isPreconditionFailed())
+                .andExpect(jsonPath("$.code").value(ApiErrorCode.PRECONDITION_FAILED.getValue()));
+        Mockito.verifyNoInteractions(deviceService);
+    }
+
+    @Test
+    void handleCannotCreateTransactionException() throws Exception {
+        Mockito.doThrow(new CannotCreateTransactionException("Connection is not available, request timed out"))
+                .when(deviceService).getDeviceById(ArgumentMatchers.any(UUID.class));
+        var request = MockMvcRequestBuilders
+                .get("/api/v1/devices/0d75f424-0ee4-48f8-83cd-c2067ab0c9bb");
+
+        mockMvc.perform(request)
+                .andExpect(status().isServiceUnavailable())
+                .andExpect(header().string(HttpHeaders.RETRY_AFTER, "1"))
+                .andExpect(jsonPath("$.code").value(ApiErrorCode.SERVICE_UNAVAILABLE.getValue()));
+    }
+
+    @Test
+    void handleCannotGetJdbcConnectionException() throws Exception {
+        Mockito.doThrow(new CannotGetJdbcConnectionException("Failed to obtain JDBC Connection"))
+                .when(deviceService).getDeviceById(ArgumentMatchers.any(UUID.class));
+        var request = MockMvcRequestBuilders
+                .get("/api/v1/devices/0d75f424-0ee4-48f8-83cd-c2067ab0c9bb");
+
+        mockMvc.perform(request)
+                .andExpect(status().isServiceUnavailable())
+                .andExpect(header().string(HttpHeaders.RETRY_AFTER, "1"))
+                .andExpect(jsonPath("$.code").value(ApiErrorCode.SERVICE_UNAVAILABLE.getValue()));
+    }
+
+    @Test
+    void handleDataAccessResourceFailureException() throws Exception {
+        Mockito.doThrow(new DataAccessResourceFailureException("An I/O error occurred while sending to the backend"))
+                .when(deviceService).getDeviceById(ArgumentMatchers.any(UUID.class));
+        var request = MockMvcRequestBuilders
+                .get("/api/v1/devices/0d75f424-0ee4-48f8-83cd-c2067ab0c9bb");
+
+        mockMvc.perform(request)
+                .andExpect(status().isServiceUnavailable())
+                .andExpect(header().string(HttpHeaders.RETRY_AFTER, "1"))
+                .andExpect(jsonPath("$.code").value(ApiErrorCode.SERVICE_UNAVAILABLE.getValue()));
+    }
+
+    @Test
+    void handleInvalidCursorException() throws Exception {
+        var request = MockMvcRequestBuilders
+                .get("/api/v1/devices")
+                .param("cursor", "not-a-cursor");
+
+        mockMvc.perform(request)
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.code").value(ApiErrorCode.BAD_REQUEST.getValue()));
+    }
+
+    @Test
+    void handleLimitOutOfRange() throws Exception {
+        var request = MockMvcRequestBuilders
+                .get("/api/v1/devices")
+                .param("limit", "5000");
+
+        mockMvc.perform(request)
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.code").value(ApiErrorCode.BAD_REQUEST.getValue()));
+    }
+
+    @Test
+    void handleInvalidDeviceInBatch() throws Exception {
+        var request = MockMvcRequestBuilders
+                .post("/api/v1/devices:batch")
+                .contentType(DeviceController.APPLICATION_DEVICE_REQUEST_V_1_JSON)
+                .content("""
+                        [
+                          {"name": "Device Name", "brand": "Device Brand", "state": "available"},
+                          {"name": "Device Name"}
+                        ]""");
+
+        mockMvc.perform(request)
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.code").value(ApiErrorCode.BAD_REQUEST.getValue()));
+    }
+
+    @Test
+    void handleInvalidDeviceSelectionException() throws Exception {
+        Mockito.doThrow(new InvalidDeviceSelectionException("Select devices either by ids or by filter."))
+                .when(deviceService).updateDeviceStates(ArgumentMatchers.any(DeviceStatesUpdateRequest.class));
+        var request = MockMvcRequestBuilders
+                .patch("/api/v1/devices:batch")
+                .contentType(DeviceController.APPLICATION_DEVICE_REQUEST_V_1_JSON)
+                .content("""
+                        {"state": "in-use"}""");
+
+        mockMvc.perform(request)
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.code").value(ApiErrorCode.BAD_REQUEST.getValue()))
+                .andExpect(jsonPath("$.userMessage").value("Invalid device selection"));
+    }
+}
@@ -0,0 +1,75 @@
+package smarcos.implementation.repository;
+
+import com.model.device.DeviceChangeType;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.Limit;
+import org.springframework.transaction.support.TransactionTemplate;
+import smarcos.implementation.PostgresIntegrationTest;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest
+@Tag("integration")
+class DeviceChangeRepositoryIntegrationTest extends PostgresIntegrationTest {
+
+    @Autowired
+    private DeviceChangeRepository deviceChangeRepository;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private DataSource dataSource;
+
+    @Test
+    void changeCommittedBehindRunningOneIsHeldBack() throws SQLException {
+        var since = deviceChangeRepository.findLatestSeq();
+        var first = UUID.randomUUID();
+        var second = UUID.randomUUID();
+        try (var connection = dataSource.getConnection()) {
+            connection.setAutoCommit(false);
+            append(connection, first);
+
+            transactionTemplate.executeWithoutResult(status ->
+                    deviceChangeRepository.append(DeviceChangeType.UPDATED, List.of(second)));
+            assertTrue(deviceChangeRepository.findChangesAfter(since, Limit.unlimited()).isEmpty());
+
+            connection.commit();
+        }
+
+        var changes = deviceChangeRepository.findChangesAfter(since, Limit.unlimited());
+        assertEquals(List.of(first, second), changes.stream().map(DeviceChangeView::deviceId).toList());
+        assertEquals(changes.getLast().seq(), deviceChangeRepository.findLatestSeq());
+    }
+
+    @Test
+    void ownChangesAreVisibleInsideWritingTransaction() {
+        var since = deviceChangeRepository.findLatestSeq();
+        var id = UUID.randomUUID();
+
+        var changes = transactionTemplate.execute(status -> {
+            deviceChangeRepository.append(DeviceChangeType.CREATED, List.of(id));
+            return deviceChangeRepository.findChangesAfter(since, Limit.unlimited());
+        });
+
+        assertEquals(List.of(id), changes.stream().map(DeviceChangeView::deviceId).toList());
+    }
+
+    private static void append(Connection connection, UUID deviceId) throws SQLException {
+        try (var statement = connection.prepareStatement(
+                "INSERT INTO device_changes (device_id, type) VALUES (?, 'UPDATED')")) {
+            statement.setObject(1, deviceId);
+            statement.executeUpdate();
+        }
+    }
+}
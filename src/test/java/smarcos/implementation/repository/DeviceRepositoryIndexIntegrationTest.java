@@ -0,0 +1,199 @@
+package smarcos.implementation.repository;
+
+import com.model.device.DeviceState;
+import org.hibernate.cfg.AvailableSettings;
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.data.domain.ScrollPosition;
+import org.springframework.data.domain.Window;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.annotation.Transactional;
+import smarcos.implementation.PostgresIntegrationTest;
+import smarcos.implementation.mapper.DeviceCursor;
+import smarcos.implementation.services.DeviceService;
+
+import java.time.OffsetDateTime;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Explains the statements Hibernate sends for the device queries, with their parameters bound, against a table large
+ * enough and analyzed so the planner makes the choices it would make in production.
+ */
+@SpringBootTest
+@Transactional
+@Tag("integration")
+class DeviceRepositoryIndexIntegrationTest extends PostgresIntegrationTest {
+    private static final int PAGE_SIZE = 100;
+    private static final String BRAND = "Brand 999";
+
+    @Autowired
+    private DeviceService deviceService;
+
+    @Autowired
+    private DeviceRepository deviceRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private StatementRecorder statementRecorder;
+
+    @BeforeEach
+    void setUp() {
+        // A thousand brands, one device in twenty in use and one in a hundred deleted, one second apart
+        jdbcTemplate.update("""
+                INSERT INTO devices (id, name, brand, state, creation_time, deleted_at)
+                SELECT gen_random_uuid(), 'Device ' || i, 'Brand ' || i % 1000,
+                       CASE WHEN i / 7 % 20 = 0 THEN 'IN_USE' WHEN i / 7 % 2 = 0 THEN 'AVAILABLE' ELSE 'INACTIVE' END,
+                       now() - make_interval(secs => i),
+                       CASE WHEN i % 100 = 0 THEN now() END
+                  FROM generate_series(1, 50000) AS i""");
+        jdbcTemplate.execute("ANALYZE devices");
+        statementRecorder.statements.clear();
+    }
+
+    @Test
+    void firstPageUsesKeysetIndex() {
+        deviceService.findDevices(null, null, null, null, ScrollPosition.keyset(), PAGE_SIZE);
+        var plan = explainLast(PAGE_SIZE + 1);
+        assertTrue(plan.contains("Index Scan using devices_creation_time_id_idx"), plan);
+    }
+
+    @Test
+    void nextPageSeeksKeysetIndex() {
+        var last = lastOf(deviceService.findDevices(null, null, null, null, ScrollPosition.keyset(), PAGE_SIZE));
+        deviceService.findDevices(null, null, null, null, nextPosition(last), PAGE_SIZE);
+        var plan = explainLast(last.creationTime(), last.id(), PAGE_SIZE + 1);
+        assertTrue(plan.contains("Index Scan using devices_creation_time_id_idx"), plan);
+        assertTrue(plan.contains("Index Cond: (ROW(creation_time, id) > ROW("), plan);
+    }
+
+    @Test
+    void deletedDevicesAreFilteredOnKeysetIndexScan() {
+        var last = lastOf(deviceService.findDevices(null, null, null, null, ScrollPosition.keyset(), PAGE_SIZE));
+        deviceService.findDevices(null, null, null, null, nextPosition(last), PAGE_SIZE);
+        var plan = explainLast(last.creationTime(), last.id(), PAGE_SIZE + 1);
+        // Tombstones are rare, so skipping them on the keyset index costs less than a partial index of live devices
+        assertTrue(plan.matches("(?s).*Index Scan using devices_creation_time_id_idx[^\\n]*\\n"
+                + "\\s+Index Cond: [^\\n]*\\n\\s+Filter: \\(deleted_at IS NULL\\).*"), plan);
+    }
+
+    @Test
+    void findByBrandAndStateUsesCompositeIndex() {
+        deviceService.findDevices(DeviceState.AVAILABLE, BRAND, null, null, ScrollPosition.keyset(), PAGE_SIZE);
+        var plan = explainLast(DeviceState.AVAILABLE.name(), BRAND, PAGE_SIZE + 1);
+        assertTrue(plan.contains("devices_brand_state_idx"), plan);
+    }
+
+    @Test
+    void nextPageByBrandAndStateUsesCompositeIndex() {
+        var last = lastOf(deviceService.findDevices(DeviceState.INACTIVE, BRAND, null, null, ScrollPosition.keyset(), 5));
+        deviceService.findDevices(DeviceState.INACTIVE, BRAND, null, null, nextPosition(last), 5);
+        var plan = explainLast(DeviceState.INACTIVE.name(), BRAND, last.creationTime(), last.id(), 6);
+        assertTrue(plan.contains("devices_brand_state_idx"), plan);
+    }
+
+    @Test
+    void findByBrandUsesCompositeIndex() {
+        deviceService.findDevices(null, BRAND, null, null, ScrollPosition.keyset(), PAGE_SIZE);
+        var plan = explainLast(BRAND, PAGE_SIZE + 1);
+        assertTrue(plan.contains("devices_brand_state_idx"), plan);
+    }
+
+    @Test
+    void findByStateInUseUsesPartialIndex() {
+        deviceService.findDevices(DeviceState.IN_USE, null, null, null, ScrollPosition.keyset(), PAGE_SIZE);
+        var plan = explainLast(DeviceState.IN_USE.name(), PAGE_SIZE + 1);
+        assertTrue(plan.contains("devices_in_use_idx"), plan);
+    }
+
+    @Test
+    void creationTimeRangeUsesKeysetIndex() {
+        var from = OffsetDateTime.now().minusHours(2);
+        var to = OffsetDateTime.now().minusHours(1);
+        deviceService.findDevices(null, null, from, to, ScrollPosition.keyset(), PAGE_SIZE);
+        var plan = explainLast(from, to, PAGE_SIZE + 1);
+        assertTrue(plan.contains("Index Scan using devices_creation_time_id_idx"), plan);
+        assertTrue(plan.contains("Index Cond: ((creation_time >="), plan);
+    }
+
+    @Test
+    void brandAndCreationTimeRangeUsesCompositeIndex() {
+        var from = OffsetDateTime.now().minusDays(1);
+        deviceService.findDevices(DeviceState.AVAILABLE, BRAND, from, null, ScrollPosition.keyset(), PAGE_SIZE);
+        var plan = explainLast(DeviceState.AVAILABLE.name(), BRAND, from, PAGE_SIZE + 1);
+        assertTrue(plan.contains("devices_brand_state_idx"), plan);
+    }
+
+    @Test
+    void nameSearchUsesFullTextIndex() {
+        deviceService.searchDevices("device 4242", null, null, null, null, ScrollPosition.keyset(), PAGE_SIZE);
+        var plan = explainLast("device 4242", PAGE_SIZE + 1);
+        assertTrue(plan.contains("devices_name_search_idx"), plan);
+    }
+
+    @Test
+    void brandPrefixSearchUsesTrigramIndex() {
+        deviceService.searchDevices(null, "brand 999", null, null, null, ScrollPosition.keyset(), PAGE_SIZE);
+        var plan = explainLast("brand 999%", PAGE_SIZE + 1);
+        assertTrue(plan.contains("devices_brand_trgm_idx"), plan);
+    }
+
+    @Test
+    void purgeUsesDeletedAtPartialIndex() {
+        deviceRepository.purgeDeleted(PAGE_SIZE);
+        var plan = explainLast(PAGE_SIZE);
+        assertTrue(plan.contains("devices_deleted_at_idx"), plan);
+    }
+
+    private static DeviceView lastOf(Window<DeviceView> window) {
+        return window.getContent().getLast();
+    }
+
+    private static ScrollPosition nextPosition(DeviceView device) {
+        return DeviceCursor.positionOf(device);
+    }
+
+    /**
+     * Explains the last statement Hibernate sent, binding the given parameters in the order they appear in it.
+     */
+    private String explainLast(Object... parameters) {
+        var sql = statementRecorder.statements.getLast();
+        List<String> lines = jdbcTemplate.queryForList("EXPLAIN " + sql, String.class, parameters);
+        return sql + "\n" + String.join("\n", lines);
+    }
+
+    @TestConfiguration
+    static class StatementRecorderConfig {
+
+        @Bean
+        StatementRecorder statementRecorder() {
+            return new StatementRecorder();
+        }
+
+        @Bean
+        HibernatePropertiesCustomizer statementInspectorCustomizer(StatementRecorder statementRecorder) {
+            return properties -> properties.put(AvailableSettings.STATEMENT_INSPECTOR, statementRecorder);
+        }
+    }
+
+    static class StatementRecorder implements StatementInspector {
+        private final List<String> statements = new CopyOnWriteArrayList<>();
+
+        @Override
+        public String inspect(String sql) {
+            statements.add(sql);
+            return sql;
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package smarcos.implementation.services;
+
+import com.model.device.DeviceCreationRequest;
+import com.model.device.DeviceFilter;
+import com.model.device.DevicePartiallyUpdateRequest;
+import com.model.device.DeviceState;
+import com.model.device.DeviceStatesUpdateRequest;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.cache.CacheManager;
+import org.springframework.test.context.bean.override.mockito.MockitoSpyBean;
+import smarcos.implementation.PostgresIntegrationTest;
+import smarcos.implementation.components.DeviceMetricsAspect;
+import smarcos.implementation.exceptions.DeviceNotFoundException;
+import smarcos.implementation.exceptions.InvalidDeviceSelectionException;
+import smarcos.implementation.repository.DeviceRepository;
+
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+@Tag("integration")
+class DeviceServiceCacheIntegrationTest extends PostgresIntegrationTest {
+    private static final String DEVICE_NAME = "Device";
+    private static final String DEVICE_BRAND = "Brand";
+
+    @Autowired
+    private DeviceService deviceService;
+
+    @Autowired
+    private CacheManager cacheManager;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @MockitoSpyBean
+    private DeviceRepository deviceRepository;
+
+    @Test
+    void getDeviceByIdIsServedFromCache() {
+        var createdDevice = deviceService.createDevice(new DeviceCreationRequest(DEVICE_NAME, DEVICE_BRAND, DeviceState.AVAILABLE));
+        var id = createdDevice.getId();
+        Mockito.clearInvocations(deviceRepository);
+
+        deviceService.getDeviceById(id);
+        deviceService.getDeviceById(id);
+
+        Mockito.verify(deviceRepository, Mockito.never()).findById(id);
+        assertTrue(meterRegistry.get("cache.gets").tag("cache", DeviceService.DEVICES_CACHE).tag("result", "hit")
+                .functionCounter().count() >= 2);
+        assertTrue(meterRegistry.get(DeviceMetricsAspect.SERVICE_TIMER).tag("operation", "getDeviceById").tag("outcome", "ok")
+                .timer().count() >= 2);
+        deviceService.deleteDevice(id, null);
+    }
+
+    @Test
+    void updatesRefreshTheCache() {
+        var createdDevice = deviceService.createDevice(new DeviceCreationRequest(DEVICE_NAME, DEVICE_BRAND, DeviceState.AVAILABLE));
+        var id = createdDevice.getId();
+
+        deviceService.updateDevice(id, new DeviceCreationRequest("Updated", DEVICE_BRAND, DeviceState.AVAILABLE), null);
+        assertEquals("Updated", deviceService.getDeviceById(id).getName());
+
+        var devicePartiallyUpdateRequest = new DevicePartiallyUpdateRequest();
+        devicePartiallyUpdateRequest.setState(DeviceState.INACTIVE);
+        deviceService.partiallyUpdateDevice(id, devicePartiallyUpdateRequest, null);
+        assertEquals(DeviceState.INACTIVE, deviceService.getDeviceById(id).getState());
+
+        deviceService.deleteDevice(id, null);
+    }
+
+    @Test
+    void deleteEvictsTheCache() {
+        var createdDevice = deviceService.createDevice(new DeviceCreationRequest(DEVICE_NAME, DEVICE_BRAND, DeviceState.AVAILABLE));
+        var id = createdDevice.getId();
+        deviceService.getDeviceById(id);
+
+        deviceService.deleteDevice(id, null);
+
+        assertNull(cacheManager.getCache(DeviceService.DEVICES_CACHE).get(id));
+        assertThrows(DeviceNotFoundException.class, () -> deviceService.getDeviceById(id));
+    }
+
+    @Test
+    void updateDeviceStatesEvictsTheCache() {
+        var createdDevice = deviceService.createDevice(new DeviceCreationRequest(DEVICE_NAME, DEVICE_BRAND, DeviceState.AVAILABLE));
+        var id = createdDevice.getId();
+        deviceService.getDeviceById(id);
+
+        deviceService.updateDeviceStates(new DeviceStatesUpdateRequest(DeviceState.INACTIVE).ids(List.of(id)));
+
+        assertNull(cacheManager.getCache(DeviceService.DEVICES_CACHE).get(id));
+        assertEquals(DeviceState.INACTIVE, deviceService.getDeviceById(id).getState());
+        deviceService.deleteDevice(id, null);
+    }
+
+    @Test
+    void updateDeviceStatesMatchingTooManyDevicesIsRolledBack() {
+        var brand = "Bulk Brand";
+        var ids = deviceService.createDevices(Collections.nCopies(DeviceService.MAX_SELECTED_DEVICES + 1,
+                new DeviceCreationRequest(DEVICE_NAME, brand, DeviceState.AVAILABLE)));
+        try {
+            var cachedDevice = deviceService.getDeviceById(ids.getFirst());
+            var deviceStatesUpdateRequest = new DeviceStatesUpdateRequest(DeviceState.INACTIVE)
+                    .filter(new DeviceFilter().brand(brand));
+
+            assertThrows(InvalidDeviceSelectionException.class, () -> deviceService.updateDeviceStates(deviceStatesUpdateRequest));
+
+            assertSame(cachedDevice, cacheManager.getCache(DeviceService.DEVICES_CACHE).get(ids.getFirst()).get());
+            assertTrue(deviceService.countDevices().stream()
+                    .filter(count -> count.brand().equals(brand))
+                    .allMatch(count -> count.state() == DeviceState.AVAILABLE && count.count() == ids.size()));
+        } finally {
+            deviceRepository.deleteAllByIdInBatch(ids);
+        }
+    }
+}
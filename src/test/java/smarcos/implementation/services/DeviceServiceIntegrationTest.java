@@ -1,18 +1,48 @@
 package smarcos.implementation.services;
 
+import com.model.device.DeviceChangeType;
 import com.model.device.DeviceCreationRequest;
 import com.model.device.DevicePartiallyUpdateRequest;
+import com.model.device.DeviceFilter;
 import com.model.device.DeviceState;
+import com.model.device.DeviceStateUpdateOutcome;
+import com.model.device.DeviceStatesUpdateRequest;
+import jakarta.persistence.EntityManager;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Tag;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.cache.CacheManager;
+import org.springframework.data.domain.ScrollPosition;
 import org.springframework.test.annotation.DirtiesContext;
 import org.springframework.transaction.annotation.Transactional;
 import smarcos.implementation.PostgresIntegrationTest;
+import smarcos.implementation.components.DeviceCacheInvalidationBus;
+import smarcos.implementation.components.DeviceChangeNotifier;
+import smarcos.implementation.components.ReplicaLagGuard;
+import smarcos.implementation.config.DeviceCacheManager;
+import smarcos.implementation.entities.DeviceChange;
+import smarcos.implementation.entities.Device;
+import smarcos.implementation.exceptions.DeviceInUseException;
 import smarcos.implementation.exceptions.DeviceNotFoundException;
+import smarcos.implementation.exceptions.DeviceVersionMismatchException;
+import smarcos.implementation.exceptions.InvalidDeviceSelectionException;
+import smarcos.implementation.mapper.DeviceCursor;
+import smarcos.implementation.repository.DeviceChangeRepository;
+import smarcos.implementation.repository.DeviceChangeView;
+import smarcos.implementation.repository.DeviceGroupCount;
 import smarcos.implementation.repository.DeviceRepository;
+import smarcos.implementation.repository.DeviceStateTransition;
+import smarcos.implementation.repository.DeviceView;
+
+import java.time.Duration;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.UUID;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -28,14 +58,33 @@ class DeviceServiceIntegrationTest extends PostgresIntegrationTest {
     @Autowired
     private DeviceRepository deviceRepository;
 
+    @Autowired
+    private EntityManager entityManager;
+
+    @Autowired
+    private DeviceCacheInvalidationBus deviceCacheInvalidationBus;
+
+    @Autowired
+    private DeviceChangeRepository deviceChangeRepository;
+
+    @Autowired
+    private DeviceChangeNotifier deviceChangeNotifier;
+
+    @Autowired
+    private ReplicaLagGuard replicaLagGuard;
+
     private static final String DEVICE_NAME = "Device";
     private static final String DEVICE_BRAND = "Brand";
+    private static final int PAGE_SIZE = 100;
 
     private DeviceService deviceService;
+    private CacheManager cacheManager;
 
     @BeforeEach
     void setUp() {
-        deviceService = new DeviceService(deviceRepository);
+        cacheManager = new DeviceCacheManager(DeviceService.DEVICES_CACHE);
+        deviceService = new DeviceService(deviceRepository, entityManager, deviceCacheInvalidationBus,
+                deviceChangeRepository, deviceChangeNotifier, cacheManager, replicaLagGuard);
     }
 
 
@@ -58,13 +107,43 @@ class DeviceServiceIntegrationTest extends PostgresIntegrationTest {
         assertNotNull(createdDevice);
         assertNotNull(createdDevice.getId());
 
+        var createdVersion = createdDevice.getVersion();
+        var createdLastModified = createdDevice.getLastModified();
+        assertEquals(createdDevice.getCreationTime(), createdLastModified);
         var updatedDeviceRequest = new DeviceCreationRequest(UPDATED_DEVICE_NAME, UPDATED_BRAND, DeviceState.IN_USE);
-        var updatedDevice = deviceService.updateDevice(createdDevice.getId(), updatedDeviceRequest);
+        var updatedDevice = deviceService.updateDevice(createdDevice.getId(), updatedDeviceRequest, createdVersion);
         assertEquals(createdDevice.getId(), updatedDevice.getId());
         assertEquals(UPDATED_DEVICE_NAME, updatedDevice.getName());
         assertEquals(UPDATED_BRAND, updatedDevice.getBrand());
         assertEquals(DeviceState.IN_USE, updatedDevice.getState());
         assertEquals(createdDevice.getCreationTime(), updatedDevice.getCreationTime());
+        assertEquals(createdVersion + 1, updatedDevice.getVersion());
+        assertFalse(updatedDevice.getLastModified().isBefore(createdLastModified));
+    }
+
+    @Test
+    void updateDeviceWithStaleVersionFails() {
+        var deviceCreationRequest = new DeviceCreationRequest(DEVICE_NAME, DEVICE_BRAND, DeviceState.AVAILABLE);
+        var createdDevice = deviceService.createDevice(deviceCreationRequest);
+        var staleVersion = createdDevice.getVersion();
+        var updatedDeviceRequest = new DeviceCreationRequest(UPDATED_DEVICE_NAME, UPDATED_BRAND, DeviceState.AVAILABLE);
+        deviceService.updateDevice(createdDevice.getId(), updatedDeviceRequest, staleVersion);
+
+        assertThrows(DeviceVersionMismatchException.class,
+                () -> deviceService.updateDevice(createdDevice.getId(), deviceCreationRequest, staleVersion));
+        assertEquals(UPDATED_DEVICE_NAME, deviceService.getDeviceById(createdDevice.getId()).getName());
+    }
+
+    @Test
+    void racingUpdateAtSameVersionMatchesNoRow() {
+        var deviceCreationRequest = new DeviceCreationRequest(DEVICE_NAME, DEVICE_BRAND, DeviceState.AVAILABLE);
+        var createdDevice = deviceService.createDevice(deviceCreationRequest);
+        var version = createdDevice.getVersion();
+        var updatedDeviceRequest = new DeviceCreationRequest(UPDATED_DEVICE_NAME, UPDATED_BRAND, DeviceState.AVAILABLE);
+        deviceService.updateDevice(createdDevice.getId(), updatedDeviceRequest, version);
+
+        assertTrue(deviceRepository.update(createdDevice.getId(), DEVICE_NAME, DEVICE_BRAND, DeviceState.AVAILABLE, version).isEmpty());
+        assertEquals(UPDATED_DEVICE_NAME, deviceService.getDeviceById(createdDevice.getId()).getName());
     }
 
     @Test
@@ -76,7 +155,7 @@ class DeviceServiceIntegrationTest extends PostgresIntegrationTest {
 
         var devicePartiallyUpdateRequest = new DevicePartiallyUpdateRequest();
         devicePartiallyUpdateRequest.setName(UPDATED_DEVICE_NAME);
-        var partiallyUpdateDevice = deviceService.partiallyUpdateDevice(createdDevice.getId(), devicePartiallyUpdateRequest);
+        var partiallyUpdateDevice = deviceService.partiallyUpdateDevice(createdDevice.getId(), devicePartiallyUpdateRequest, null);
         assertEquals(createdDevice.getId(), partiallyUpdateDevice.getId());
         assertEquals(UPDATED_DEVICE_NAME, partiallyUpdateDevice.getName());
         assertEquals(createdDevice.getBrand(), partiallyUpdateDevice.getBrand());
@@ -84,6 +163,31 @@ class DeviceServiceIntegrationTest extends PostgresIntegrationTest {
         assertEquals(createdDevice.getCreationTime(), partiallyUpdateDevice.getCreationTime());
     }
 
+    @Test
+    void updateDeviceInUseFails() {
+        var createdDevice = deviceService.createDevice(new DeviceCreationRequest(DEVICE_NAME, DEVICE_BRAND, DeviceState.IN_USE));
+        var updatedDeviceRequest = new DeviceCreationRequest(UPDATED_DEVICE_NAME, UPDATED_BRAND, DeviceState.AVAILABLE);
+
+        assertThrows(DeviceInUseException.class, () -> deviceService.updateDevice(createdDevice.getId(), updatedDeviceRequest, null));
+        assertThrows(DeviceNotFoundException.class, () -> deviceService.updateDevice(UUID.randomUUID(), updatedDeviceRequest, null));
+        assertEquals(DEVICE_NAME, deviceService.getDeviceById(createdDevice.getId()).getName());
+    }
+
+    @Test
+    void partiallyUpdateStateOfDeviceInUseSuccess() {
+        var createdDevice = deviceService.createDevice(new DeviceCreationRequest(DEVICE_NAME, DEVICE_BRAND, DeviceState.IN_USE));
+        var devicePartiallyUpdateRequest = new DevicePartiallyUpdateRequest();
+        devicePartiallyUpdateRequest.setName(UPDATED_DEVICE_NAME);
+        assertThrows(DeviceInUseException.class,
+                () -> deviceService.partiallyUpdateDevice(createdDevice.getId(), devicePartiallyUpdateRequest, null));
+
+        devicePartiallyUpdateRequest.setName(null);
+        devicePartiallyUpdateRequest.setState(DeviceState.AVAILABLE);
+        var partiallyUpdateDevice = deviceService.partiallyUpdateDevice(createdDevice.getId(), devicePartiallyUpdateRequest, null);
+        assertEquals(DEVICE_NAME, partiallyUpdateDevice.getName());
+        assertEquals(DeviceState.AVAILABLE, partiallyUpdateDevice.getState());
+    }
+
     @Test
     void getDeviceByIdSuccess() {
         var deviceCreationRequest = new DeviceCreationRequest(DEVICE_NAME, DEVICE_BRAND, DeviceState.AVAILABLE);
@@ -105,10 +209,39 @@ class DeviceServiceIntegrationTest extends PostgresIntegrationTest {
         deviceService.createDevice(deviceCreationRequest);
         deviceService.createDevice(deviceCreationRequest);
 
-        var existingDevices = deviceService.findDevices(null, null);
+        var existingDevices = deviceService.findDevices(null, null, null, null, ScrollPosition.keyset(), PAGE_SIZE);
         assertEquals(2, existingDevices.size());
     }
 
+    @Test
+    void findDevicesByIdsReturnsExistingDevicesInRequestOrder() {
+        var first = deviceService.createDevice(new DeviceCreationRequest(DEVICE_NAME, DEVICE_BRAND, DeviceState.AVAILABLE));
+        var second = deviceService.createDevice(new DeviceCreationRequest(DEVICE_NAME, DEVICE_BRAND, DeviceState.IN_USE));
+        var missingId = UUID.randomUUID();
+
+        var devices = deviceService.findDevicesByIds(List.of(second.getId(), missingId, first.getId(), second.getId()));
+
+        assertEquals(List.of(second.getId(), first.getId()), List.copyOf(devices.keySet()));
+        assertEquals(DeviceState.IN_USE, devices.get(second.getId()).getState());
+        var cache = cacheManager.getCache(DeviceService.DEVICES_CACHE);
+        assertNotNull(cache.get(first.getId()));
+        assertNull(cache.get(missingId));
+    }
+
+    @Test
+    void countDevicesByBrandAndState() {
+        deviceService.createDevice(new DeviceCreationRequest(DEVICE_NAME, DEVICE_BRAND, DeviceState.AVAILABLE));
+        deviceService.createDevice(new DeviceCreationRequest(DEVICE_NAME, DEVICE_BRAND, DeviceState.AVAILABLE));
+        deviceService.createDevice(new DeviceCreationRequest(DEVICE_NAME, DEVICE_BRAND, DeviceState.IN_USE));
+        deviceService.createDevice(new DeviceCreationRequest(DEVICE_NAME, UPDATED_BRAND, DeviceState.AVAILABLE));
+
+        assertEquals(List.of(
+                        new DeviceGroupCount(DEVICE_BRAND, DeviceState.AVAILABLE, 2),
+                        new DeviceGroupCount(DEVICE_BRAND, DeviceState.IN_USE, 1),
+                        new DeviceGroupCount(UPDATED_BRAND, DeviceState.AVAILABLE, 1)),
+                deviceService.countDevices());
+    }
+
     @Test
     void deleteDeviceSuccess() {
         var deviceCreationRequest = new DeviceCreationRequest(DEVICE_NAME, DEVICE_BRAND, DeviceState.AVAILABLE);
@@ -119,8 +252,140 @@ class DeviceServiceIntegrationTest extends PostgresIntegrationTest {
 
         var existingDevice = deviceService.getDeviceById(id);
         assertNotNull(existingDevice);
-        deviceService.deleteDevice(existingDevice.getId());
+        deviceService.deleteDevice(existingDevice.getId(), existingDevice.getVersion());
+        assertThrows(DeviceNotFoundException.class, () -> deviceService.getDeviceById(id));
+    }
+
+    @Test
+    void deletedDeviceIsExcludedUntilPurged() {
+        var deleted = deviceService.createDevice(new DeviceCreationRequest(DEVICE_NAME, DEVICE_BRAND, DeviceState.AVAILABLE));
+        var kept = deviceService.createDevice(new DeviceCreationRequest(DEVICE_NAME, DEVICE_BRAND, DeviceState.AVAILABLE));
+        var id = deleted.getId();
+        deviceService.deleteDevice(id, null);
+
+        assertNotNull(deletedAt(id));
         assertThrows(DeviceNotFoundException.class, () -> deviceService.getDeviceById(id));
+        assertThrows(DeviceNotFoundException.class, () -> deviceService.deleteDevice(id, null));
+        assertThrows(DeviceNotFoundException.class, () -> deviceService.updateDevice(id,
+                new DeviceCreationRequest(UPDATED_DEVICE_NAME, UPDATED_BRAND, DeviceState.INACTIVE), null));
+        assertEquals(List.of(kept.getId()), new ArrayList<>(deviceService.findDevicesByIds(List.of(id, kept.getId())).keySet()));
+        assertEquals(ids(kept), find(null, DEVICE_BRAND, null, null));
+        assertEquals(ids(kept), search(DEVICE_NAME, null, null, null, null));
+        assertEquals(List.of(new DeviceGroupCount(DEVICE_BRAND, DeviceState.AVAILABLE, 1)), deviceService.countDevices());
+        assertEquals(List.of(new DeviceStateTransition(id, DeviceStateUpdateOutcome.NOT_FOUND)),
+                deviceService.updateDeviceStates(new DeviceStatesUpdateRequest(DeviceState.INACTIVE).ids(List.of(id))));
+        var filter = new DeviceFilter().brand(DEVICE_BRAND);
+        assertEquals(List.of(new DeviceStateTransition(kept.getId(), DeviceStateUpdateOutcome.UPDATED)),
+                deviceService.updateDeviceStates(new DeviceStatesUpdateRequest(DeviceState.INACTIVE).filter(filter)));
+
+        // Devices deleted by other test classes may still be waiting for their purge
+        assertTrue(deviceRepository.purgeDeleted(PAGE_SIZE) > 0);
+        assertNull(deletedAt(id));
+        assertEquals(0, deviceRepository.purgeDeleted(PAGE_SIZE));
+    }
+
+    @Test
+    void deleteDeviceInUseFails() {
+        var createdDevice = deviceService.createDevice(new DeviceCreationRequest(DEVICE_NAME, DEVICE_BRAND, DeviceState.IN_USE));
+        var id = createdDevice.getId();
+
+        assertThrows(DeviceInUseException.class, () -> deviceService.deleteDevice(id, null));
+        assertThrows(DeviceVersionMismatchException.class, () -> deviceService.deleteDevice(id, createdDevice.getVersion() + 1));
+        assertThrows(DeviceNotFoundException.class, () -> deviceService.deleteDevice(UUID.randomUUID(), null));
+        assertNotNull(deviceService.getDeviceById(id));
+    }
+
+    @Test
+    void updateDeviceStatesByIdsReportsEveryOutcome() {
+        var since = deviceChangeRepository.findLatestSeq();
+        var available = deviceService.createDevice(new DeviceCreationRequest(DEVICE_NAME, DEVICE_BRAND, DeviceState.AVAILABLE));
+        var inUse = deviceService.createDevice(new DeviceCreationRequest(DEVICE_NAME, DEVICE_BRAND, DeviceState.IN_USE));
+        var missingId = UUID.randomUUID();
+        var deviceStatesUpdateRequest = new DeviceStatesUpdateRequest(DeviceState.IN_USE)
+                .ids(List.of(missingId, inUse.getId(), available.getId(), inUse.getId()));
+
+        var transitions = deviceService.updateDeviceStates(deviceStatesUpdateRequest);
+
+        assertEquals(List.of(
+                        new DeviceStateTransition(missingId, DeviceStateUpdateOutcome.NOT_FOUND),
+                        new DeviceStateTransition(inUse.getId(), DeviceStateUpdateOutcome.UNCHANGED),
+                        new DeviceStateTransition(available.getId(), DeviceStateUpdateOutcome.UPDATED)),
+                transitions);
+        entityManager.clear();
+        var updatedDevice = deviceService.getDeviceById(available.getId());
+        assertEquals(DeviceState.IN_USE, updatedDevice.getState());
+        assertEquals(available.getVersion() + 1, updatedDevice.getVersion());
+        assertEquals(inUse.getVersion(), deviceService.getDeviceById(inUse.getId()).getVersion());
+        var changes = deviceService.findChanges(since, PAGE_SIZE, Duration.ZERO);
+        assertEquals(3, changes.size());
+        assertEquals(DeviceChangeType.UPDATED, changes.getLast().type());
+        assertEquals(available.getId(), changes.getLast().deviceId());
+    }
+
+    @Test
+    void updateDeviceStatesByFilterUpdatesMatchingDevices() {
+        var since = deviceChangeRepository.findLatestSeq();
+        var available = deviceService.createDevice(new DeviceCreationRequest(DEVICE_NAME, DEVICE_BRAND, DeviceState.AVAILABLE));
+        var inactive = deviceService.createDevice(new DeviceCreationRequest(DEVICE_NAME, DEVICE_BRAND, DeviceState.INACTIVE));
+        var otherBrand = deviceService.createDevice(new DeviceCreationRequest(DEVICE_NAME, UPDATED_BRAND, DeviceState.AVAILABLE));
+        var deviceStatesUpdateRequest = new DeviceStatesUpdateRequest(DeviceState.INACTIVE)
+                .filter(new DeviceFilter().brand(DEVICE_BRAND));
+
+        var transitions = deviceService.updateDeviceStates(deviceStatesUpdateRequest);
+
+        assertEquals(List.of(new DeviceStateTransition(available.getId(), DeviceStateUpdateOutcome.UPDATED)), transitions);
+        entityManager.clear();
+        assertEquals(DeviceState.INACTIVE, deviceService.getDeviceById(inactive.getId()).getState());
+        assertEquals(DeviceState.INACTIVE, deviceService.getDeviceById(available.getId()).getState());
+        assertEquals(DeviceState.AVAILABLE, deviceService.getDeviceById(otherBrand.getId()).getState());
+        assertEquals(available.getId(), deviceService.findChanges(since, PAGE_SIZE, Duration.ZERO).getLast().deviceId());
+
+        var filteredByState = new DeviceStatesUpdateRequest(DeviceState.AVAILABLE)
+                .filter(new DeviceFilter().brand(DEVICE_BRAND).state(DeviceState.IN_USE));
+        assertTrue(deviceService.updateDeviceStates(filteredByState).isEmpty());
+    }
+
+    @Test
+    void updateDeviceStatesRequiresEitherIdsOrFilter() {
+        var neither = new DeviceStatesUpdateRequest(DeviceState.IN_USE);
+        var both = new DeviceStatesUpdateRequest(DeviceState.IN_USE)
+                .ids(List.of(UUID.randomUUID()))
+                .filter(new DeviceFilter().brand(DEVICE_BRAND));
+
+        assertThrows(InvalidDeviceSelectionException.class, () -> deviceService.updateDeviceStates(neither));
+        assertThrows(InvalidDeviceSelectionException.class, () -> deviceService.updateDeviceStates(both));
+    }
+
+    @Test
+    void findChangesReturnsChangesInOrder() {
+        var since = deviceChangeRepository.findAll().stream().mapToLong(DeviceChange::getSeq).max().orElse(0);
+        var keptDevice = deviceService.createDevice(new DeviceCreationRequest(DEVICE_NAME, DEVICE_BRAND, DeviceState.AVAILABLE));
+        var deletedDevice = deviceService.createDevice(new DeviceCreationRequest(DEVICE_NAME, DEVICE_BRAND, DeviceState.AVAILABLE));
+        var partiallyUpdateRequest = new DevicePartiallyUpdateRequest();
+        partiallyUpdateRequest.setState(DeviceState.IN_USE);
+        deviceService.partiallyUpdateDevice(keptDevice.getId(), partiallyUpdateRequest, null);
+        deviceService.deleteDevice(deletedDevice.getId(), null);
+        var createdIds = deviceService.createDevices(List.of(
+                new DeviceCreationRequest(DEVICE_NAME, DEVICE_BRAND, DeviceState.AVAILABLE),
+                new DeviceCreationRequest(DEVICE_NAME, DEVICE_BRAND, DeviceState.INACTIVE)));
+
+        var changes = deviceService.findChanges(since, PAGE_SIZE, Duration.ZERO);
+        assertEquals(List.of(DeviceChangeType.CREATED, DeviceChangeType.CREATED, DeviceChangeType.UPDATED,
+                        DeviceChangeType.DELETED, DeviceChangeType.CREATED, DeviceChangeType.CREATED),
+                changes.stream().map(DeviceChangeView::type).toList());
+        assertEquals(List.of(keptDevice.getId(), deletedDevice.getId(), keptDevice.getId(), deletedDevice.getId(),
+                        createdIds.get(0), createdIds.get(1)),
+                changes.stream().map(DeviceChangeView::deviceId).toList());
+        for (int i = 1; i < changes.size(); i++) {
+            assertTrue(changes.get(i).seq() > changes.get(i - 1).seq());
+        }
+        assertEquals(DeviceState.IN_USE, changes.get(0).device().state());
+        assertNull(changes.get(1).device());
+        assertEquals(DeviceState.INACTIVE, changes.get(5).device().state());
+
+        var lastSeq = changes.getLast().seq();
+        assertEquals(changes.subList(4, 6), deviceService.findChanges(changes.get(3).seq(), PAGE_SIZE, Duration.ZERO));
+        assertTrue(deviceService.findChanges(lastSeq, PAGE_SIZE, Duration.ofMillis(50)).isEmpty());
     }
 
     @Test
@@ -131,16 +396,174 @@ class DeviceServiceIntegrationTest extends PostgresIntegrationTest {
         deviceCreationRequest.setState(DeviceState.IN_USE);
         deviceService.createDevice(deviceCreationRequest);
 
-        var existingDevices = deviceService.findDevices(null, null);
+        var existingDevices = deviceService.findDevices(null, null, null, null, ScrollPosition.keyset(), PAGE_SIZE);
         assertEquals(2, existingDevices.size());
 
-        var devicesByState = deviceService.findDevices(DeviceState.IN_USE, null);
+        var devicesByState = deviceService.findDevices(DeviceState.IN_USE, null, null, null, ScrollPosition.keyset(), PAGE_SIZE);
         assertEquals(1, devicesByState.size());
 
-        var devicesByBrand = deviceService.findDevices(null, DEVICE_BRAND);
+        var devicesByBrand = deviceService.findDevices(null, DEVICE_BRAND, null, null, ScrollPosition.keyset(), PAGE_SIZE);
         assertEquals(1, devicesByBrand.size());
 
-        var devicesByStateAndBrand = deviceService.findDevices(DeviceState.IN_USE, DEVICE_BRAND);
+        var devicesByStateAndBrand = deviceService.findDevices(DeviceState.IN_USE, DEVICE_BRAND, null, null, ScrollPosition.keyset(), PAGE_SIZE);
         assertEquals(0, devicesByStateAndBrand.size());
     }
-}
\ No newline at end of file
+
+    @Test
+    void findDevicesFilteringByCreationTime() {
+        var first = deviceService.createDevice(new DeviceCreationRequest(DEVICE_NAME, DEVICE_BRAND, DeviceState.AVAILABLE));
+        var second = deviceService.createDevice(new DeviceCreationRequest(DEVICE_NAME, "Other Brand", DeviceState.AVAILABLE));
+        var third = deviceService.createDevice(new DeviceCreationRequest(DEVICE_NAME, DEVICE_BRAND, DeviceState.IN_USE));
+
+        assertEquals(ids(second, third), find(null, null, second.getCreationTime(), null));
+        assertEquals(ids(first, second), find(null, null, null, third.getCreationTime()));
+        assertEquals(ids(second), find(null, null, second.getCreationTime(), third.getCreationTime()));
+        assertEquals(ids(third), find(DeviceState.IN_USE, DEVICE_BRAND, first.getCreationTime(), null));
+        assertEquals(ids(), find(null, null, third.getCreationTime(), second.getCreationTime()));
+    }
+
+    @Test
+    void searchDevicesCombinesCriteria() {
+        var phone = deviceService.createDevice(new DeviceCreationRequest("Galaxy Phone Ultra", "Samsung", DeviceState.AVAILABLE));
+        var tablet = deviceService.createDevice(new DeviceCreationRequest("Galaxy Tab", "Samsung", DeviceState.IN_USE));
+        var pixel = deviceService.createDevice(new DeviceCreationRequest("Pixel Phone", "Google", DeviceState.INACTIVE));
+        var generic = deviceService.createDevice(new DeviceCreationRequest("Phone", "100% Brand", DeviceState.AVAILABLE));
+
+        assertEquals(ids(phone, pixel, generic), search("PHONE", null, null, null, null));
+        assertEquals(ids(phone), search("galaxy phone", null, null, null, null));
+        assertEquals(ids(tablet), search("galaxy -phone", null, null, null, null));
+        assertEquals(ids(phone, tablet), search(null, "sAm", null, null, null));
+        assertEquals(ids(generic), search(null, "100%", null, null, null));
+        assertEquals(ids(), search(null, "1_0", null, null, null));
+        assertEquals(ids(tablet, pixel), search(null, null, List.of(DeviceState.IN_USE, DeviceState.INACTIVE), null, null));
+        assertEquals(ids(tablet, pixel), search(null, null, null, tablet.getCreationTime(), generic.getCreationTime()));
+        assertEquals(ids(phone), search("phone", "sam", List.of(DeviceState.AVAILABLE), null, null));
+        assertEquals(ids(phone, tablet, pixel, generic), search(" ", "", List.of(), null, null));
+    }
+
+    @Test
+    void searchDevicesPagesThroughMatches() {
+        var deviceCreationRequest = new DeviceCreationRequest("Phone", DEVICE_BRAND, DeviceState.AVAILABLE);
+        var created = new ArrayList<UUID>();
+        for (int i = 0; i < 3; i++) {
+            created.add(deviceService.createDevice(deviceCreationRequest).getId());
+        }
+        deviceService.createDevice(new DeviceCreationRequest("Tablet", DEVICE_BRAND, DeviceState.AVAILABLE));
+
+        var firstPage = deviceService.searchDevices("phone", null, null, null, null, ScrollPosition.keyset(), 2);
+        assertTrue(firstPage.hasNext());
+        var cursor = DeviceCursor.encode(firstPage.positionAt(firstPage.size() - 1));
+        var lastPage = deviceService.searchDevices("phone", null, null, null, null, DeviceCursor.decode(cursor), 2);
+        assertFalse(lastPage.hasNext());
+
+        var fetched = new ArrayList<UUID>();
+        firstPage.forEach(device -> fetched.add(device.id()));
+        lastPage.forEach(device -> fetched.add(device.id()));
+        assertEquals(created, fetched);
+    }
+
+    @Test
+    void findDevicesPagesThroughAllDevices() {
+        var deviceCreationRequest = new DeviceCreationRequest(DEVICE_NAME, DEVICE_BRAND, DeviceState.AVAILABLE);
+        var createdIds = new HashSet<UUID>();
+        for (int i = 0; i < 5; i++) {
+            createdIds.add(deviceService.createDevice(deviceCreationRequest).getId());
+        }
+
+        var fetchedIds = new HashSet<UUID>();
+        var firstPage = deviceService.findDevices(null, null, null, null, ScrollPosition.keyset(), 2);
+        assertEquals(2, firstPage.size());
+        assertTrue(firstPage.hasNext());
+        firstPage.forEach(device -> fetchedIds.add(device.id()));
+
+        var cursor = DeviceCursor.encode(firstPage.positionAt(firstPage.size() - 1));
+        var secondPage = deviceService.findDevices(null, null, null, null, DeviceCursor.decode(cursor), 2);
+        assertEquals(2, secondPage.size());
+        assertTrue(secondPage.hasNext());
+        secondPage.forEach(device -> fetchedIds.add(device.id()));
+
+        cursor = DeviceCursor.encode(secondPage.positionAt(secondPage.size() - 1));
+        var lastPage = deviceService.findDevices(null, null, null, null, DeviceCursor.decode(cursor), 2);
+        assertEquals(1, lastPage.size());
+        assertFalse(lastPage.hasNext());
+        lastPage.forEach(device -> fetchedIds.add(device.id()));
+
+        assertEquals(createdIds, fetchedIds);
+    }
+
+    @Test
+    void exportDevicesStreamsAllDevices() {
+        var deviceCreationRequest = new DeviceCreationRequest(DEVICE_NAME, DEVICE_BRAND, DeviceState.AVAILABLE);
+        deviceService.createDevice(deviceCreationRequest);
+        deviceService.createDevice(deviceCreationRequest);
+
+        var exportedDevices = new ArrayList<UUID>();
+        deviceService.exportDevices(device -> exportedDevices.add(device.getId()));
+        assertEquals(2, exportedDevices.size());
+    }
+
+    @Test
+    void createDevicesReturnsIdsInOrder() {
+        var deviceCreationRequests = List.of(
+                new DeviceCreationRequest(DEVICE_NAME, DEVICE_BRAND, DeviceState.AVAILABLE),
+                new DeviceCreationRequest(UPDATED_DEVICE_NAME, UPDATED_BRAND, DeviceState.IN_USE));
+
+        var ids = deviceService.createDevices(deviceCreationRequests);
+        assertEquals(2, ids.size());
+        assertEquals(DEVICE_NAME, deviceService.getDeviceById(ids.get(0)).getName());
+        assertEquals(UPDATED_DEVICE_NAME, deviceService.getDeviceById(ids.get(1)).getName());
+    }
+
+    @Test
+    void createdDevicesHaveTimeOrderedIds() {
+        var first = deviceService.createDevice(new DeviceCreationRequest(DEVICE_NAME, DEVICE_BRAND, DeviceState.AVAILABLE));
+        var ids = deviceService.createDevices(List.of(
+                new DeviceCreationRequest(DEVICE_NAME, DEVICE_BRAND, DeviceState.AVAILABLE),
+                new DeviceCreationRequest(DEVICE_NAME, DEVICE_BRAND, DeviceState.IN_USE)));
+
+        assertEquals(7, first.getId().version());
+        assertTrue(first.getId().compareTo(ids.get(0)) < 0);
+        assertTrue(ids.get(0).compareTo(ids.get(1)) < 0);
+    }
+
+    @Test
+    void devicesWithRandomIdsRemainAccessible() {
+        var id = UUID.randomUUID();
+        entityManager.createNativeQuery("""
+                        INSERT INTO devices (id, name, brand, state, creation_time, last_modified, version)
+                        VALUES (?1, ?2, ?3, 'AVAILABLE', now(), now(), 0)""")
+                .setParameter(1, id)
+                .setParameter(2, DEVICE_NAME)
+                .setParameter(3, DEVICE_BRAND)
+                .executeUpdate();
+
+        assertEquals(DEVICE_NAME, deviceService.getDeviceById(id).getName());
+        var updatedDevice = deviceService.updateDevice(id,
+                new DeviceCreationRequest(UPDATED_DEVICE_NAME, UPDATED_BRAND, DeviceState.IN_USE), null);
+        assertEquals(id, updatedDevice.getId());
+        assertEquals(UPDATED_DEVICE_NAME, deviceService.getDeviceById(id).getName());
+    }
+
+    private List<UUID> search(String name, String brandPrefix, List<DeviceState> states, OffsetDateTime createdAfter,
+                              OffsetDateTime createdBefore) {
+        return deviceService.searchDevices(name, brandPrefix, states, createdAfter, createdBefore, ScrollPosition.keyset(),
+                PAGE_SIZE).map(DeviceView::id).getContent();
+    }
+
+    private Object deletedAt(UUID id) {
+        return entityManager.createNativeQuery("SELECT deleted_at FROM devices WHERE id = ?1")
+                .setParameter(1, id)
+                .getResultStream()
+                .findFirst()
+                .orElse(null);
+    }
+
+    private List<UUID> find(DeviceState state, String brand, OffsetDateTime createdAfter, OffsetDateTime createdBefore) {
+        return deviceService.findDevices(state, brand, createdAfter, createdBefore, ScrollPosition.keyset(), PAGE_SIZE)
+                .map(DeviceView::id).getContent();
+    }
+
+    private static List<UUID> ids(Device... devices) {
+        return Arrays.stream(devices).map(Device::getId).toList();
+    }
+}
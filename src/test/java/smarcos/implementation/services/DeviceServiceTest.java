@@ -1,8 +1,14 @@
 package smarcos.implementation.services;
 
+import com.model.device.DeviceChangeType;
 import com.model.device.DeviceCreationRequest;
 import com.model.device.DevicePartiallyUpdateRequest;
+import com.model.device.DeviceFilter;
 import com.model.device.DeviceState;
+import com.model.device.DeviceStateUpdateOutcome;
+import com.model.device.DeviceStatesUpdateRequest;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import jakarta.persistence.EntityManager;
 import org.junit.jupiter.api.Tag;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -10,16 +16,38 @@ import org.mockito.ArgumentMatchers;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.Mockito;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.cache.CacheManager;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.domain.ScrollPosition;
+import org.springframework.data.jpa.domain.Specification;
+import smarcos.implementation.components.DeviceCacheInvalidationBus;
+import smarcos.implementation.components.DeviceChangeNotifier;
+import smarcos.implementation.components.ReplicaLagGuard;
+import smarcos.implementation.config.DeviceCache;
 import smarcos.implementation.entities.Device;
 import smarcos.implementation.exceptions.DeviceInUseException;
 import smarcos.implementation.exceptions.DeviceNotFoundException;
+import smarcos.implementation.exceptions.DeviceVersionMismatchException;
+import smarcos.implementation.exceptions.InvalidDeviceSelectionException;
+import smarcos.implementation.mapper.DeviceCursor;
 import smarcos.implementation.mapper.DeviceMapper;
+import smarcos.implementation.repository.DeviceChangeRepository;
+import smarcos.implementation.repository.DeviceChangeView;
+import smarcos.implementation.repository.DeviceGroupCount;
 import smarcos.implementation.repository.DeviceRepository;
+import smarcos.implementation.repository.DeviceStateTransition;
+import smarcos.implementation.repository.DeviceView;
 
+import java.time.Duration;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.stream.IntStream;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -33,14 +61,37 @@ class DeviceServiceTest {
     @Mock
     private DeviceRepository deviceRepository;
 
+    @Mock
+    private EntityManager entityManager;
+
+    @Mock
+    private DeviceCacheInvalidationBus deviceCacheInvalidationBus;
+
+    @Mock
+    private DeviceChangeRepository deviceChangeRepository;
+
+    @Mock
+    private DeviceChangeNotifier deviceChangeNotifier;
+
+    @Mock
+    private CacheManager cacheManager;
+
+    @Spy
+    private ReplicaLagGuard replicaLagGuard = new ReplicaLagGuard(List.of(), Duration.ofSeconds(5));
+
     private static final String DEVICE_NAME = "Device";
     private static final String DEVICE_BRAND = "Brand";
     private static final UUID ID = UUID.fromString("0d75f424-0ee4-48f8-83cd-c2067ab0c9bb");
+    private static final int PAGE_SIZE = 100;
+    private static final Limit LIMIT = Limit.of(PAGE_SIZE);
 
     @Test
     void createDeviceSuccess() {
         var deviceCreationRequest = new DeviceCreationRequest(DEVICE_NAME, DEVICE_BRAND, DeviceState.AVAILABLE);
         var device = DeviceMapper.toEntity(deviceCreationRequest);
+        device.setId(ID);
+        var time = OffsetDateTime.now();
+        Mockito.when(deviceRepository.currentTime()).thenReturn(time);
         Mockito.when(deviceRepository.save(ArgumentMatchers.any(Device.class))).thenReturn(device);
 
         var createdDevice = deviceService.createDevice(deviceCreationRequest);
@@ -48,38 +99,61 @@ class DeviceServiceTest {
         assertEquals(DEVICE_NAME, createdDevice.getName());
         assertEquals(DEVICE_BRAND, createdDevice.getBrand());
         assertEquals(DeviceState.AVAILABLE, createdDevice.getState());
+        Mockito.verify(deviceRepository).save(ArgumentMatchers.<Device>argThat(saved ->
+                time.equals(saved.getCreationTime()) && time.equals(saved.getLastModified())));
+        Mockito.verify(deviceCacheInvalidationBus).publishCreation(List.of(ID));
+        Mockito.verify(deviceChangeRepository).append(DeviceChangeType.CREATED, List.of(ID));
     }
 
     @Test
     void updateDeviceSuccess() {
         var deviceCreationRequest = new DeviceCreationRequest(DEVICE_NAME, DEVICE_BRAND, DeviceState.AVAILABLE);
         var device = DeviceMapper.toEntity(deviceCreationRequest);
-        Mockito.when(deviceRepository.findById(ID)).thenReturn(Optional.of(device));
-        Mockito.when(deviceRepository.save(ArgumentMatchers.any(Device.class))).thenReturn(device);
+        Mockito.when(deviceRepository.update(ID, DEVICE_NAME, DEVICE_BRAND, DeviceState.AVAILABLE, null)).thenReturn(Optional.of(device));
 
-        var updateDevice = deviceService.updateDevice(ID, deviceCreationRequest);
+        var updateDevice = deviceService.updateDevice(ID, deviceCreationRequest, null);
         assertNotNull(updateDevice);
+        Mockito.verify(deviceCacheInvalidationBus, Mockito.times(1)).publish(ID);
+        Mockito.verify(deviceChangeRepository).append(DeviceChangeType.UPDATED, List.of(ID));
+        Mockito.verify(deviceRepository, Mockito.never()).findById(ID);
         assertEquals(DEVICE_NAME, updateDevice.getName());
         assertEquals(DEVICE_BRAND, updateDevice.getBrand());
         assertEquals(DeviceState.AVAILABLE, updateDevice.getState());
     }
 
+    @Test
+    void updateDeviceWithStaleVersionFails() {
+        var deviceCreationRequest = new DeviceCreationRequest(DEVICE_NAME, DEVICE_BRAND, DeviceState.AVAILABLE);
+        var device = DeviceMapper.toEntity(deviceCreationRequest);
+        device.setVersion(2L);
+        Mockito.when(deviceRepository.update(ID, DEVICE_NAME, DEVICE_BRAND, DeviceState.AVAILABLE, 1L)).thenReturn(Optional.empty());
+        Mockito.when(deviceRepository.findById(ID)).thenReturn(Optional.of(device));
+
+        assertThrows(DeviceVersionMismatchException.class, () -> deviceService.updateDevice(ID, deviceCreationRequest, 1L));
+        Mockito.verifyNoInteractions(deviceCacheInvalidationBus);
+        Mockito.verifyNoInteractions(deviceChangeRepository);
+    }
+
     @Test
     void updateDeviceInUseFails() {
         var deviceCreationRequest = new DeviceCreationRequest(DEVICE_NAME, DEVICE_BRAND, DeviceState.IN_USE);
         var device = DeviceMapper.toEntity(deviceCreationRequest);
+        device.setVersion(1L);
+        Mockito.when(deviceRepository.update(ID, "Update", DEVICE_BRAND, DeviceState.IN_USE, 1L)).thenReturn(Optional.empty());
         Mockito.when(deviceRepository.findById(ID)).thenReturn(Optional.of(device));
         deviceCreationRequest.setName("Update");
 
-        assertThrows(DeviceInUseException.class, () -> deviceService.updateDevice(ID, deviceCreationRequest));
+        assertThrows(DeviceInUseException.class, () -> deviceService.updateDevice(ID, deviceCreationRequest, 1L));
+        Mockito.verifyNoInteractions(deviceCacheInvalidationBus);
     }
 
     @Test
     void updateDeviceNotFoundFails() {
         var deviceCreationRequest = new DeviceCreationRequest(DEVICE_NAME, DEVICE_BRAND, DeviceState.AVAILABLE);
+        Mockito.when(deviceRepository.update(ID, DEVICE_NAME, DEVICE_BRAND, DeviceState.AVAILABLE, null)).thenReturn(Optional.empty());
         Mockito.when(deviceRepository.findById(ID)).thenReturn(Optional.empty());
 
-        assertThrows(DeviceNotFoundException.class, () -> deviceService.updateDevice(ID, deviceCreationRequest));
+        assertThrows(DeviceNotFoundException.class, () -> deviceService.updateDevice(ID, deviceCreationRequest, null));
     }
 
     @Test
@@ -88,37 +162,51 @@ class DeviceServiceTest {
         devicePartiallyUpdateRequest.setName(DEVICE_NAME);
         var device = new Device();
         device.setName(DEVICE_NAME);
-        Mockito.when(deviceRepository.findById(ID)).thenReturn(Optional.of(device));
-        Mockito.when(deviceRepository.save(ArgumentMatchers.any(Device.class))).thenReturn(device);
+        Mockito.when(deviceRepository.update(ID, DEVICE_NAME, null, null, null)).thenReturn(Optional.of(device));
 
-        var partiallyUpdateDevice = deviceService.partiallyUpdateDevice(ID, devicePartiallyUpdateRequest);
+        var partiallyUpdateDevice = deviceService.partiallyUpdateDevice(ID, devicePartiallyUpdateRequest, null);
         assertNotNull(partiallyUpdateDevice);
         assertEquals(DEVICE_NAME, partiallyUpdateDevice.getName());
+        Mockito.verify(deviceCacheInvalidationBus, Mockito.times(1)).publish(ID);
     }
 
     @Test
     void partiallyUpdateDeviceNotFoundFails() {
         var devicePartiallyUpdateRequest = new DevicePartiallyUpdateRequest();
         devicePartiallyUpdateRequest.setName(DEVICE_NAME);
+        Mockito.when(deviceRepository.update(ID, DEVICE_NAME, null, null, null)).thenReturn(Optional.empty());
         Mockito.when(deviceRepository.findById(ID)).thenReturn(Optional.empty());
 
-        assertThrows(DeviceNotFoundException.class, () -> deviceService.partiallyUpdateDevice(ID, devicePartiallyUpdateRequest));
+        assertThrows(DeviceNotFoundException.class, () -> deviceService.partiallyUpdateDevice(ID, devicePartiallyUpdateRequest, null));
     }
 
     @Test
-    void updateNameOrBrandOfDeviceInUseFails() {
+    void updateNameOfDeviceInUseFails() {
         var devicePartiallyUpdateRequest = new DevicePartiallyUpdateRequest();
         devicePartiallyUpdateRequest.setName("Name");
         var device = new Device();
         device.setName(DEVICE_NAME);
         device.setState(DeviceState.IN_USE);
+        Mockito.when(deviceRepository.update(ID, "Name", null, null, null)).thenReturn(Optional.empty());
         Mockito.when(deviceRepository.findById(ID)).thenReturn(Optional.of(device));
-        assertThrows(DeviceInUseException.class, () -> deviceService.partiallyUpdateDevice(ID, devicePartiallyUpdateRequest));
 
-        devicePartiallyUpdateRequest.setName(null);
+        var exception = assertThrows(DeviceInUseException.class, () -> deviceService.partiallyUpdateDevice(ID, devicePartiallyUpdateRequest, null));
+        assertEquals("Cannot update name or brand device that is currently in use.", exception.getMessage());
+        Mockito.verifyNoInteractions(deviceCacheInvalidationBus);
+    }
+
+    @Test
+    void updateNameOrBrandOfDeviceInUseFails() {
+        var devicePartiallyUpdateRequest = new DevicePartiallyUpdateRequest();
         devicePartiallyUpdateRequest.setBrand("Brand");
+        var device = new Device();
+        device.setName(DEVICE_NAME);
+        device.setState(DeviceState.IN_USE);
+        Mockito.when(deviceRepository.update(ID, null, "Brand", null, null)).thenReturn(Optional.empty());
+        Mockito.when(deviceRepository.findById(ID)).thenReturn(Optional.of(device));
 
-        assertThrows(DeviceInUseException.class, () -> deviceService.partiallyUpdateDevice(ID, devicePartiallyUpdateRequest));
+        var exception = assertThrows(DeviceInUseException.class, () -> deviceService.partiallyUpdateDevice(ID, devicePartiallyUpdateRequest, null));
+        assertEquals("Cannot update name or brand device that is currently in use.", exception.getMessage());
     }
 
     @Test
@@ -126,13 +214,14 @@ class DeviceServiceTest {
         var devicePartiallyUpdateRequest = new DevicePartiallyUpdateRequest();
         devicePartiallyUpdateRequest.setState(DeviceState.INACTIVE);
         var device = new Device();
-        device.setState(DeviceState.IN_USE);
-        Mockito.when(deviceRepository.findById(ID)).thenReturn(Optional.of(device));
-        Mockito.when(deviceRepository.save(ArgumentMatchers.any(Device.class))).thenReturn(device);
+        device.setState(DeviceState.INACTIVE);
+        Mockito.when(deviceRepository.update(ID, null, null, DeviceState.INACTIVE, null)).thenReturn(Optional.of(device));
 
-        var partiallyUpdateDevice = deviceService.partiallyUpdateDevice(ID, devicePartiallyUpdateRequest);
+        var partiallyUpdateDevice = deviceService.partiallyUpdateDevice(ID, devicePartiallyUpdateRequest, null);
         assertNotNull(partiallyUpdateDevice);
         assertEquals(DeviceState.INACTIVE, partiallyUpdateDevice.getState());
+        Mockito.verify(deviceRepository, Mockito.never()).findById(ID);
+        Mockito.verify(deviceCacheInvalidationBus, Mockito.times(1)).publish(ID);
     }
 
     @Test
@@ -158,75 +247,179 @@ class DeviceServiceTest {
     void findAllDevices() {
         var deviceCreationRequest = new DeviceCreationRequest(DEVICE_NAME, DEVICE_BRAND, DeviceState.AVAILABLE);
         var device = DeviceMapper.toEntity(deviceCreationRequest);
-        Mockito.when(deviceRepository.findAll()).thenReturn(List.of(device));
+        returnPage(List.of(toView(device)));
 
-        var existingDevices = deviceService.findDevices(null, null);
+        var existingDevices = deviceService.findDevices(null, null, null, null, ScrollPosition.keyset(), PAGE_SIZE);
         assertNotNull(existingDevices);
-        var existingDevice = existingDevices.getFirst();
-        assertEquals(DEVICE_NAME, existingDevice.getName());
-        assertEquals(DEVICE_BRAND, existingDevice.getBrand());
-        assertEquals(DeviceState.AVAILABLE, existingDevice.getState());
+        var existingDevice = existingDevices.getContent().getFirst();
+        assertEquals(DEVICE_NAME, existingDevice.name());
+        assertEquals(DEVICE_BRAND, existingDevice.brand());
+        assertEquals(DeviceState.AVAILABLE, existingDevice.state());
+    }
+
+    @Test
+    void findDevicesByIdsFetchesOnlyUncachedDevices() {
+        var cache = new DeviceCache(DeviceService.DEVICES_CACHE, Caffeine.newBuilder().build());
+        Mockito.when(cacheManager.getCache(DeviceService.DEVICES_CACHE)).thenReturn(cache);
+        var cachedDevice = DeviceMapper.toEntity(new DeviceCreationRequest(DEVICE_NAME, DEVICE_BRAND, DeviceState.AVAILABLE));
+        cachedDevice.setId(UUID.randomUUID());
+        cache.put(cachedDevice.getId(), cachedDevice);
+        var storedDevice = DeviceMapper.toEntity(new DeviceCreationRequest(DEVICE_NAME, DEVICE_BRAND, DeviceState.IN_USE));
+        storedDevice.setId(ID);
+        var missingId = UUID.randomUUID();
+        Mockito.when(deviceRepository.findAllByIdIn(new UUID[]{ID, missingId})).thenReturn(List.of(storedDevice));
+
+        var devices = deviceService.findDevicesByIds(List.of(ID, cachedDevice.getId(), missingId, ID));
+
+        assertEquals(List.of(ID, cachedDevice.getId()), List.copyOf(devices.keySet()));
+        assertSame(cachedDevice, devices.get(cachedDevice.getId()));
+        assertSame(storedDevice, cache.get(ID, Device.class));
+    }
+
+    @Test
+    void findDevicesByIdsServesCachedDevicesWithoutQuerying() {
+        var cache = new DeviceCache(DeviceService.DEVICES_CACHE, Caffeine.newBuilder().build());
+        Mockito.when(cacheManager.getCache(DeviceService.DEVICES_CACHE)).thenReturn(cache);
+        var cachedDevice = DeviceMapper.toEntity(new DeviceCreationRequest(DEVICE_NAME, DEVICE_BRAND, DeviceState.AVAILABLE));
+        cache.put(ID, cachedDevice);
+
+        assertEquals(1, deviceService.findDevicesByIds(List.of(ID)).size());
+        Mockito.verifyNoInteractions(deviceRepository);
     }
 
     @Test
     void deleteDeviceSuccess() {
+        Mockito.when(deviceRepository.deleteUnlessInUse(ID, null)).thenReturn(true);
+        deviceService.deleteDevice(ID, null);
+
+        Mockito.verify(deviceRepository, Mockito.never()).findById(ID);
+        Mockito.verify(deviceCacheInvalidationBus, Mockito.times(1)).publish(ID);
+        Mockito.verify(deviceChangeRepository).append(DeviceChangeType.DELETED, List.of(ID));
+    }
+
+    @Test
+    void updateDeviceStatesByIdsPublishesUpdatedDevices() {
+        var unchangedId = UUID.randomUUID();
+        var ids = List.of(ID, unchangedId);
+        Mockito.when(deviceRepository.updateStates(DeviceState.IN_USE, ids)).thenReturn(List.of(
+                new DeviceStateTransition(ID, DeviceStateUpdateOutcome.UPDATED),
+                new DeviceStateTransition(unchangedId, DeviceStateUpdateOutcome.UNCHANGED)));
+
+        var transitions = deviceService.updateDeviceStates(new DeviceStatesUpdateRequest(DeviceState.IN_USE).ids(ids));
+
+        assertEquals(2, transitions.size());
+        Mockito.verify(deviceCacheInvalidationBus).publishAll(List.of(ID));
+        Mockito.verify(deviceChangeRepository).append(DeviceChangeType.UPDATED, List.of(ID));
+    }
+
+    @Test
+    void updateDeviceStatesByFilterWithoutChangesPublishesNothing() {
+        Mockito.when(deviceRepository.updateStates(DeviceState.AVAILABLE, DEVICE_BRAND, DeviceState.INACTIVE,
+                DeviceService.MAX_SELECTED_DEVICES + 1)).thenReturn(List.of());
+
+        var deviceStatesUpdateRequest = new DeviceStatesUpdateRequest(DeviceState.AVAILABLE)
+                .filter(new DeviceFilter().brand(DEVICE_BRAND).state(DeviceState.INACTIVE));
+        deviceService.updateDeviceStates(deviceStatesUpdateRequest);
+
+        Mockito.verifyNoInteractions(deviceCacheInvalidationBus);
+        Mockito.verifyNoInteractions(deviceChangeRepository);
+    }
+
+    @Test
+    void updateDeviceStatesByFilterMatchingTooManyDevicesFails() {
+        var transitions = Collections.nCopies(DeviceService.MAX_SELECTED_DEVICES + 1,
+                new DeviceStateTransition(ID, DeviceStateUpdateOutcome.UPDATED));
+        Mockito.when(deviceRepository.updateStates(DeviceState.INACTIVE, DEVICE_BRAND, null,
+                DeviceService.MAX_SELECTED_DEVICES + 1)).thenReturn(transitions);
+
+        var deviceStatesUpdateRequest = new DeviceStatesUpdateRequest(DeviceState.INACTIVE)
+                .filter(new DeviceFilter().brand(DEVICE_BRAND));
+
+        assertThrows(InvalidDeviceSelectionException.class, () -> deviceService.updateDeviceStates(deviceStatesUpdateRequest));
+        Mockito.verifyNoInteractions(deviceCacheInvalidationBus);
+        Mockito.verifyNoInteractions(deviceChangeRepository);
+    }
+
+    @Test
+    void updateDeviceStatesByEmptyFilterFails() {
+        var deviceStatesUpdateRequest = new DeviceStatesUpdateRequest(DeviceState.INACTIVE).filter(new DeviceFilter());
+
+        assertThrows(InvalidDeviceSelectionException.class, () -> deviceService.updateDeviceStates(deviceStatesUpdateRequest));
+        Mockito.verifyNoInteractions(deviceRepository);
+    }
+
+    @Test
+    void updateDeviceStatesWithoutSelectionFails() {
+        var deviceStatesUpdateRequest = new DeviceStatesUpdateRequest(DeviceState.IN_USE).ids(null);
+
+        assertThrows(InvalidDeviceSelectionException.class, () -> deviceService.updateDeviceStates(deviceStatesUpdateRequest));
+        Mockito.verifyNoInteractions(deviceRepository);
+    }
+
+    @Test
+    void deleteDeviceWithStaleVersionFails() {
         var deviceCreationRequest = new DeviceCreationRequest(DEVICE_NAME, DEVICE_BRAND, DeviceState.AVAILABLE);
         var device = DeviceMapper.toEntity(deviceCreationRequest);
+        device.setVersion(0L);
+        Mockito.when(deviceRepository.deleteUnlessInUse(ID, 1L)).thenReturn(false);
         Mockito.when(deviceRepository.findById(ID)).thenReturn(Optional.of(device));
-        deviceService.deleteDevice(ID);
 
-        Mockito.verify(deviceRepository, Mockito.times(1)).delete(device);
+        assertThrows(DeviceVersionMismatchException.class, () -> deviceService.deleteDevice(ID, 1L));
+        Mockito.verifyNoInteractions(deviceCacheInvalidationBus);
+        Mockito.verifyNoInteractions(deviceChangeRepository);
     }
 
     @Test
     void deleteDeviceInUseFails() {
         var deviceCreationRequest = new DeviceCreationRequest(DEVICE_NAME, DEVICE_BRAND, DeviceState.IN_USE);
         var device = DeviceMapper.toEntity(deviceCreationRequest);
+        Mockito.when(deviceRepository.deleteUnlessInUse(ID, null)).thenReturn(false);
         Mockito.when(deviceRepository.findById(ID)).thenReturn(Optional.of(device));
 
-        assertThrows(DeviceInUseException.class, () -> deviceService.deleteDevice(ID));
+        assertThrows(DeviceInUseException.class, () -> deviceService.deleteDevice(ID, null));
     }
 
     @Test
     void deleteDeviceNotFoundFails() {
+        Mockito.when(deviceRepository.deleteUnlessInUse(ID, null)).thenReturn(false);
         Mockito.when(deviceRepository.findById(ID)).thenReturn(Optional.empty());
 
-        assertThrows(DeviceNotFoundException.class, () -> deviceService.deleteDevice(ID));
+        assertThrows(DeviceNotFoundException.class, () -> deviceService.deleteDevice(ID, null));
     }
 
     @Test
     void findDevicesByBrand() {
         var deviceCreationRequest = new DeviceCreationRequest(DEVICE_NAME, DEVICE_BRAND, DeviceState.AVAILABLE);
         var device = DeviceMapper.toEntity(deviceCreationRequest);
-        Mockito.when(deviceRepository.findByBrand(DEVICE_BRAND)).thenReturn(List.of(device));
+        returnPage(List.of(toView(device)));
 
-        var existingDevices = deviceService.findDevices(null, DEVICE_BRAND);
+        var existingDevices = deviceService.findDevices(null, DEVICE_BRAND, null, null, ScrollPosition.keyset(), PAGE_SIZE);
         assertNotNull(existingDevices);
-        var existingDevice = existingDevices.getFirst();
-        assertEquals(DEVICE_NAME, existingDevice.getName());
-        assertEquals(DEVICE_BRAND, existingDevice.getBrand());
-        assertEquals(DeviceState.AVAILABLE, existingDevice.getState());
+        var existingDevice = existingDevices.getContent().getFirst();
+        assertEquals(DEVICE_NAME, existingDevice.name());
+        assertEquals(DEVICE_BRAND, existingDevice.brand());
+        assertEquals(DeviceState.AVAILABLE, existingDevice.state());
     }
 
     @Test
     void findDevicesByState() {
         var deviceCreationRequest = new DeviceCreationRequest(DEVICE_NAME, DEVICE_BRAND, DeviceState.AVAILABLE);
         var device = DeviceMapper.toEntity(deviceCreationRequest);
-        Mockito.when(deviceRepository.findByState(DeviceState.AVAILABLE)).thenReturn(List.of(device));
+        returnPage(List.of(toView(device)));
 
-        var existingDevices = deviceService.findDevices(DeviceState.AVAILABLE, null);
+        var existingDevices = deviceService.findDevices(DeviceState.AVAILABLE, null, null, null, ScrollPosition.keyset(), PAGE_SIZE);
         assertNotNull(existingDevices);
-        var existingDevice = existingDevices.getFirst();
-        assertEquals(DEVICE_NAME, existingDevice.getName());
-        assertEquals(DEVICE_BRAND, existingDevice.getBrand());
-        assertEquals(DeviceState.AVAILABLE, existingDevice.getState());
+        var existingDevice = existingDevices.getContent().getFirst();
+        assertEquals(DEVICE_NAME, existingDevice.name());
+        assertEquals(DEVICE_BRAND, existingDevice.brand());
+        assertEquals(DeviceState.AVAILABLE, existingDevice.state());
     }
 
     @Test
     void findDevicesReturnsNothing() {
-        Mockito.when(deviceRepository.findAll()).thenReturn(List.of());
+        returnPage(List.of());
 
-        var existingDevices = deviceService.findDevices(null, null);
+        var existingDevices = deviceService.findDevices(null, null, null, null, ScrollPosition.keyset(), PAGE_SIZE);
         assertNotNull(existingDevices);
         assertEquals(0, existingDevices.size());
     }
@@ -235,13 +428,115 @@ class DeviceServiceTest {
     void findDevicesByStateAndBrand() {
         var deviceCreationRequest = new DeviceCreationRequest(DEVICE_NAME, DEVICE_BRAND, DeviceState.AVAILABLE);
         var device = DeviceMapper.toEntity(deviceCreationRequest);
-        Mockito.when(deviceRepository.findByBrandAndState(DEVICE_BRAND, DeviceState.AVAILABLE)).thenReturn(List.of(device));
+        returnPage(List.of(toView(device)));
 
-        var existingDevices = deviceService.findDevices(DeviceState.AVAILABLE, DEVICE_BRAND);
+        var existingDevices = deviceService.findDevices(DeviceState.AVAILABLE, DEVICE_BRAND, null, null, ScrollPosition.keyset(), PAGE_SIZE);
         assertNotNull(existingDevices);
-        var existingDevice = existingDevices.getFirst();
-        assertEquals(DEVICE_NAME, existingDevice.getName());
-        assertEquals(DEVICE_BRAND, existingDevice.getBrand());
-        assertEquals(DeviceState.AVAILABLE, existingDevice.getState());
+        var existingDevice = existingDevices.getContent().getFirst();
+        assertEquals(DEVICE_NAME, existingDevice.name());
+        assertEquals(DEVICE_BRAND, existingDevice.brand());
+        assertEquals(DeviceState.AVAILABLE, existingDevice.state());
+    }
+
+    @Test
+    void searchDevices() {
+        var device = DeviceMapper.toEntity(new DeviceCreationRequest(DEVICE_NAME, DEVICE_BRAND, DeviceState.IN_USE));
+        returnPage(List.of(toView(device)));
+
+        var found = deviceService.searchDevices("device", "bra", List.of(DeviceState.IN_USE, DeviceState.INACTIVE),
+                OffsetDateTime.now().minusDays(1), OffsetDateTime.now(), ScrollPosition.keyset(), PAGE_SIZE);
+
+        assertEquals(List.of(toView(device)), found.getContent());
+    }
+
+    @Test
+    void findDevicesPointsNextPageAfterLastDevice() {
+        var devices = IntStream.range(0, 3)
+                .mapToObj(i -> new DeviceView(UUID.randomUUID(), DEVICE_NAME, DEVICE_BRAND, DeviceState.AVAILABLE,
+                        OffsetDateTime.now(), OffsetDateTime.now(), 0L))
+                .toList();
+        returnPage(devices);
+
+        var page = deviceService.findDevices(null, null, null, null, ScrollPosition.keyset(), 2);
+
+        assertEquals(devices.subList(0, 2), page.getContent());
+        assertTrue(page.hasNext());
+        assertEquals(DeviceCursor.positionOf(devices.get(1)), page.positionAt(1));
+    }
+
+    @Test
+    void countDevices() {
+        var counts = List.of(new DeviceGroupCount(DEVICE_BRAND, DeviceState.AVAILABLE, 3));
+        Mockito.when(deviceRepository.countByBrandAndState()).thenReturn(counts);
+
+        assertEquals(counts, deviceService.countDevices());
+    }
+
+    @Test
+    void exportDevicesClearsPersistenceContextPerChunk() {
+        var deviceCreationRequest = new DeviceCreationRequest(DEVICE_NAME, DEVICE_BRAND, DeviceState.AVAILABLE);
+        Mockito.when(deviceRepository.streamAll())
+                .thenReturn(IntStream.range(0, 2500).mapToObj(i -> DeviceMapper.toEntity(deviceCreationRequest)));
+
+        var exportedDevices = new ArrayList<Device>();
+        deviceService.exportDevices(exportedDevices::add);
+
+        assertEquals(2500, exportedDevices.size());
+        Mockito.verify(entityManager, Mockito.times(2)).clear();
+    }
+
+    @Test
+    void createDevicesFlushesInBatches() {
+        var deviceCreationRequest = new DeviceCreationRequest(DEVICE_NAME, DEVICE_BRAND, DeviceState.AVAILABLE);
+        var deviceCreationRequests = IntStream.range(0, 1200).mapToObj(i -> deviceCreationRequest).toList();
+        Mockito.when(deviceRepository.saveAll(ArgumentMatchers.<List<Device>>any())).thenAnswer(invocation -> {
+            List<Device> devices = invocation.getArgument(0);
+            devices.forEach(device -> device.setId(UUID.randomUUID()));
+            return devices;
+        });
+
+        var ids = deviceService.createDevices(deviceCreationRequests);
+        assertEquals(1200, ids.size());
+        Mockito.verify(deviceRepository, Mockito.times(3)).saveAll(ArgumentMatchers.<List<Device>>any());
+        Mockito.verify(entityManager, Mockito.times(3)).flush();
+        Mockito.verify(entityManager, Mockito.times(3)).clear();
+        Mockito.verify(deviceChangeRepository).append(DeviceChangeType.CREATED, ids);
+    }
+
+    @Test
+    void findChangesReturnsAvailableChangesWithoutWaiting() {
+        var changes = List.of(new DeviceChangeView(8, DeviceChangeType.DELETED, ID, OffsetDateTime.now(), null));
+        Mockito.when(deviceChangeRepository.findChangesAfter(7, LIMIT)).thenReturn(changes);
+
+        assertEquals(changes, deviceService.findChanges(7, PAGE_SIZE, Duration.ofSeconds(30)));
+        Mockito.verify(deviceChangeNotifier, Mockito.never()).await(ArgumentMatchers.anyLong(), ArgumentMatchers.any());
+    }
+
+    @Test
+    void findChangesWaitsForNextChange() {
+        var changes = List.of(new DeviceChangeView(8, DeviceChangeType.DELETED, ID, OffsetDateTime.now(), null));
+        Mockito.when(deviceChangeNotifier.generation()).thenReturn(3L, 4L);
+        Mockito.when(deviceChangeRepository.findChangesAfter(7, LIMIT)).thenReturn(List.of(), changes);
+
+        assertEquals(changes, deviceService.findChanges(7, PAGE_SIZE, Duration.ofSeconds(30)));
+        Mockito.verify(deviceChangeNotifier).await(ArgumentMatchers.eq(3L), ArgumentMatchers.any(Duration.class));
+    }
+
+    @Test
+    void findChangesWithoutWaitReturnsNothing() {
+        Mockito.when(deviceChangeRepository.findChangesAfter(7, LIMIT)).thenReturn(List.of());
+
+        assertTrue(deviceService.findChanges(7, PAGE_SIZE, Duration.ZERO).isEmpty());
+        Mockito.verify(deviceChangeNotifier, Mockito.never()).await(ArgumentMatchers.anyLong(), ArgumentMatchers.any());
+    }
+
+    private static DeviceView toView(Device device) {
+        return new DeviceView(device.getId(), device.getName(), device.getBrand(), device.getState(), device.getCreationTime(),
+                device.getLastModified(), device.getVersion());
+    }
+
+    private void returnPage(List<DeviceView> devices) {
+        Mockito.when(deviceRepository.findBy(ArgumentMatchers.<Specification<Device>>any(), ArgumentMatchers.any()))
+                .thenReturn(devices);
     }
 }